@@ -0,0 +1,57 @@
+package com.brambolt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reads of a single shared specification from many threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class ContendedReadBenchmark {
+
+    private Specification specification;
+
+    private FrozenSpecification frozen;
+
+    @Setup
+    public void setUp() {
+        specification = SpecificationBenchmark.createChain(4, 100);
+        frozen = specification.freeze();
+    }
+
+    @Benchmark
+    public String getProperty() {
+        return specification.getProperty("bench.string");
+    }
+
+    @Benchmark
+    public Integer getInteger() {
+        return specification.getInteger("bench.int");
+    }
+
+    @Benchmark
+    public int getInt() {
+        return specification.getInt("bench.int", 0);
+    }
+
+    @Benchmark
+    public String frozenGetProperty() {
+        return frozen.getProperty("bench.string");
+    }
+
+    @Benchmark
+    public int frozenGetInt() {
+        return frozen.getInt("bench.int", 0);
+    }
+}
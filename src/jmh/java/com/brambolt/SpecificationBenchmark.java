@@ -0,0 +1,100 @@
+package com.brambolt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single-threaded lookups through defaults chains of increasing
+ * depth, with the looked up properties defined at the bottom of the chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpecificationBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    private Specification specification;
+
+    private FrozenSpecification frozen;
+
+    private PropertyHandle<Integer> handle;
+
+    @Setup
+    public void setUp() {
+        specification = createChain(depth, 100);
+        frozen = specification.freeze();
+        handle = specification.handle("bench.int", Integer.class);
+    }
+
+    /**
+     * Creates a defaults chain with the benchmark properties in the root.
+     *
+     * @param depth The number of specifications in the chain
+     * @param width The number of filler properties per specification
+     * @return The specification at the top of the chain
+     */
+    static Specification createChain(int depth, int width) {
+        Specification current = new Specification();
+        current.setProperty("bench.string", "value");
+        current.setProperty("bench.int", "42");
+        current.setProperty("bench.boolean", "true");
+        for (int level = 0; level < depth; ++level) {
+            if (0 < level)
+                current = new Specification(current);
+            for (int i = 0; i < width; ++i)
+                current.setProperty(String.format("bench.level%d.key%d", level, i), Integer.toString(i));
+        }
+        return current;
+    }
+
+    @Benchmark
+    public String getProperty() {
+        return specification.getProperty("bench.string");
+    }
+
+    @Benchmark
+    public String getPropertyMissing() {
+        return specification.getProperty("bench.missing");
+    }
+
+    @Benchmark
+    public Integer getInteger() {
+        return specification.getInteger("bench.int");
+    }
+
+    @Benchmark
+    public Boolean getBoolean() {
+        return specification.getBoolean("bench.boolean");
+    }
+
+    @Benchmark
+    public int getInt() {
+        return specification.getInt("bench.int", 0);
+    }
+
+    @Benchmark
+    public String frozenGetProperty() {
+        return frozen.getProperty("bench.string");
+    }
+
+    @Benchmark
+    public int handleGetInt() {
+        return handle.getInt(0);
+    }
+
+    @Benchmark
+    public Map<String, Object> convertToMap() {
+        return specification.convertToMap();
+    }
+}
@@ -0,0 +1,125 @@
+package com.brambolt.wrench;
+
+import com.brambolt.LoadOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading instance properties from synthetic listings with the
+ * given number of hosts, environments and targets.
+ *
+ * <p>The resources are generated in memory, so the numbers cover parsing,
+ * merging and preparing the structured views but not class path lookups.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InstancePropertiesBenchmark {
+
+    private static final String GROUP_ID = "bench.system";
+
+    private static final String GROUP_PATH = "bench/system";
+
+    /**
+     * The synthetic resources, shared with the instances under test since
+     * resources are opened from the super constructor.
+     */
+    private static volatile Map<String, byte[]> resources;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private File secretsDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        resources = createResources(size);
+        secretsDir = Files.createTempDirectory("bench").toFile();
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        secretsDir.delete();
+    }
+
+    @Benchmark
+    public InstanceProperties load() {
+        return new SyntheticInstanceProperties(secretsDir, LoadOptions.defaults());
+    }
+
+    @Benchmark
+    public InstanceProperties loadParallel() {
+        return new SyntheticInstanceProperties(
+            secretsDir, LoadOptions.defaults().withExecutor(ForkJoinPool.commonPool()));
+    }
+
+    @Benchmark
+    public Map<String, Object> loadAndPrepareTargets() {
+        return new SyntheticInstanceProperties(secretsDir, LoadOptions.defaults()).getTargets();
+    }
+
+    private static Map<String, byte[]> createResources(int size) {
+        Map<String, byte[]> result = new HashMap<>();
+        StringBuilder instance = new StringBuilder();
+        StringBuilder target = new StringBuilder();
+        StringBuilder hosts = new StringBuilder();
+        StringBuilder environments = new StringBuilder();
+        StringBuilder targets = new StringBuilder();
+        for (int i = 0; i < size; ++i) {
+            String separator = 0 < i ? "," : "";
+            hosts.append(separator).append("h").append(i);
+            environments.append(separator).append("e").append(i);
+            targets.append(separator).append("t").append(i);
+            add(result, String.format("%s/hosts/h%d.properties", GROUP_PATH, i),
+                String.format("%s.hosts.h%d.address=10.0.%d.%d%n", GROUP_ID, i, i / 256, i % 256));
+            add(result, String.format("%s/environments/e%d.properties", GROUP_PATH, i),
+                String.format("%s.environments.e%d.url=https://e%d.example.com/%n", GROUP_ID, i, i));
+            target.append(String.format("%s.targets.t%d.environment.name=e%d%n", GROUP_ID, i, i));
+            target.append(String.format("%s.targets.t%d.host.name=h%d%n", GROUP_ID, i, i));
+        }
+        instance.append(String.format("%s.hosts.listing=%s%n", GROUP_ID, hosts));
+        instance.append(String.format("%s.environments.listing=%s%n", GROUP_ID, environments));
+        instance.append(String.format("%s.name=Benchmark%n", GROUP_ID));
+        target.append(String.format("%s.targets.listing=%s%n", GROUP_ID, targets));
+        add(result, GROUP_PATH + "/instance.properties", instance.toString());
+        add(result, GROUP_PATH + "/target.properties", target.toString());
+        return result;
+    }
+
+    private static void add(Map<String, byte[]> resources, String path, String content) {
+        resources.put(path, content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static class SyntheticInstanceProperties extends InstanceProperties {
+
+        SyntheticInstanceProperties(File secretsDir, LoadOptions loadOptions) {
+            super(new Properties(), GROUP_PATH + "/instance.properties", null, secretsDir, GROUP_ID, loadOptions);
+        }
+
+        @Override
+        protected InputStream openResource(String resourcePath) {
+            byte[] bytes = resources.get(resourcePath);
+            return null != bytes ? new ByteArrayInputStream(bytes) : null;
+        }
+    }
+}
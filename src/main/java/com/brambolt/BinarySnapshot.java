@@ -0,0 +1,255 @@
+package com.brambolt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes resolved specifications in a compact binary form.
+ *
+ * <p>The snapshot is written at build time and read at startup instead of
+ * loading and merging the properties resources; see
+ * <code>com.brambolt.wrench.InstanceSnapshot</code> for instance
+ * properties, which also stores the resolved target contexts. Reading
+ * decodes length-prefixed strings; there is no escape handling, no line
+ * parsing and no defaults chain. The file is mapped read-only, so reading
+ * it does not copy it through stream buffers, but the tables are decoded
+ * eagerly into ordinary strings and maps; the decoded properties are not
+ * shared between processes.</p>
+ *
+ * <p>A snapshot holds named tables of string keys and values. The table
+ * named <code>#PROPERTIES</code> holds the resolved properties; other
+ * tables carry whatever the writer needs to restore along with them. The
+ * layout is:</p>
+ * <pre>
+ *     int    magic ('WSNP')
+ *     int    format version
+ *     int    string count
+ *     string count times: int byte length, UTF-8 bytes
+ *     int    table count
+ *     table count times:
+ *         int    name index
+ *         int    entry count
+ *         entry count times: int key index, int value index
+ * </pre>
+ * <p>Table names, keys and values share the string table, so repeated
+ * strings are stored once. Tables keep the order they were written in and
+ * their entries are sorted by key.</p>
+ */
+public class BinarySnapshot {
+
+    /**
+     * The name of the table that holds the resolved properties.
+     */
+    public static final String PROPERTIES = "";
+
+    private static final int MAGIC = 0x57534E50;
+
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Writes resolved properties to a file.
+     *
+     * @param properties The properties to write, with defaults resolved
+     * @param file The file to write to
+     * @throws IllegalStateException If the file can't be written
+     * @see #writeTables(Map, File)
+     */
+    public static void write(Properties properties, File file) {
+        writeTables(Collections.singletonMap(PROPERTIES, toMap(properties)), file);
+    }
+
+    /**
+     * Writes tables to a file.
+     *
+     * <p>The snapshot is written to a temporary file which then replaces the
+     * target file, so readers never map a partially written snapshot.</p>
+     *
+     * @param tables The tables by name, in the order to write them
+     * @param file The file to write to
+     * @throws IllegalStateException If the file can't be written
+     */
+    public static void writeTables(Map<String, ? extends Map<String, String>> tables, File file) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File temporary = null;
+        try {
+            temporary = File.createTempFile(file.getName(), ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                encode(tables, out);
+            }
+            Files.move(temporary.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException x) {
+            if (null != temporary)
+                //noinspection ResultOfMethodCallIgnored
+                temporary.delete();
+            throw new IllegalStateException("Unable to write snapshot: " + file.getAbsolutePath(), x);
+        }
+    }
+
+    /**
+     * Writes tables in the snapshot layout.
+     *
+     * @param tables The tables by name, in the order to write them
+     * @param out The output
+     * @throws IOException If the output can't be written
+     */
+    public static void encode(Map<String, ? extends Map<String, String>> tables, DataOutput out) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        int[][] entries = new int[tables.size()][];
+        int[] names = new int[tables.size()];
+        int t = 0;
+        for (Map.Entry<String, ? extends Map<String, String>> table: tables.entrySet()) {
+            names[t] = intern(strings, table.getKey());
+            Map<String, String> sorted = new TreeMap<>(table.getValue());
+            int[] indexes = new int[2 * sorted.size()];
+            int i = 0;
+            for (Map.Entry<String, String> entry: sorted.entrySet()) {
+                indexes[i++] = intern(strings, entry.getKey());
+                indexes[i++] = intern(strings, entry.getValue());
+            }
+            entries[t++] = indexes;
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(strings.size());
+        for (String string: strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(tables.size());
+        for (int i = 0; i < names.length; ++i) {
+            out.writeInt(names[i]);
+            out.writeInt(entries[i].length / 2);
+            for (int index: entries[i])
+                out.writeInt(index);
+        }
+    }
+
+    /**
+     * Maps a snapshot file and reads the resolved properties into a frozen
+     * specification.
+     *
+     * @param file The snapshot file
+     * @return The frozen specification
+     * @throws IllegalStateException If the file can't be read or is not a valid snapshot
+     */
+    public static FrozenSpecification read(File file) {
+        return new FrozenSpecification(readTables(file).get(PROPERTIES));
+    }
+
+    /**
+     * Maps a snapshot file and reads its tables.
+     *
+     * @param file The snapshot file
+     * @return The unmodifiable tables by name, in the order they were written;
+     *         the properties table is always present
+     * @throws IllegalStateException If the file can't be read or is not a valid snapshot
+     */
+    public static Map<String, Map<String, String>> readTables(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, file.getAbsolutePath());
+        } catch (IOException x) {
+            throw new IllegalStateException("Unable to read snapshot: " + file.getAbsolutePath(), x);
+        }
+    }
+
+    /**
+     * Decodes tables, checking every count, length and index against the
+     * remaining input, so that a truncated or corrupt snapshot fails with a
+     * message rather than an arbitrary runtime exception.
+     *
+     * @param buffer The encoded snapshot
+     * @param source Describes the input, for messages
+     * @return The unmodifiable tables by name
+     * @throws IllegalStateException If the input is not a valid snapshot
+     */
+    static Map<String, Map<String, String>> decode(ByteBuffer buffer, String source) {
+        if (buffer.remaining() < 8 || MAGIC != buffer.getInt())
+            throw new IllegalStateException("Not a snapshot: " + source);
+        int formatVersion = buffer.getInt();
+        if (FORMAT_VERSION != formatVersion)
+            throw new IllegalStateException(
+                String.format("Unsupported snapshot version %d: %s", formatVersion, source));
+        try {
+            String[] strings = new String[checkCount(buffer, buffer.getInt(), 4, source)];
+            for (int i = 0; i < strings.length; ++i) {
+                int length = checkCount(buffer, buffer.getInt(), 1, source);
+                ByteBuffer bytes = buffer.slice();
+                bytes.limit(length);
+                strings[i] = StandardCharsets.UTF_8.decode(bytes).toString();
+                buffer.position(buffer.position() + length);
+            }
+            int tableCount = checkCount(buffer, buffer.getInt(), 8, source);
+            Map<String, Map<String, String>> tables = new LinkedHashMap<>(2 * tableCount);
+            for (int t = 0; t < tableCount; ++t) {
+                String name = strings[checkIndex(buffer.getInt(), strings, source)];
+                int count = checkCount(buffer, buffer.getInt(), 8, source);
+                Map<String, String> values = new HashMap<>(2 * count);
+                for (int i = 0; i < count; ++i) {
+                    String key = strings[checkIndex(buffer.getInt(), strings, source)];
+                    values.put(key, strings[checkIndex(buffer.getInt(), strings, source)]);
+                }
+                tables.put(name, Collections.unmodifiableMap(values));
+            }
+            if (buffer.hasRemaining())
+                throw new IllegalStateException("Corrupt snapshot, trailing bytes: " + source);
+            tables.putIfAbsent(PROPERTIES, Collections.emptyMap());
+            return Collections.unmodifiableMap(tables);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException x) {
+            throw new IllegalStateException("Corrupt snapshot, truncated: " + source, x);
+        }
+    }
+
+    /**
+     * @param size The minimum number of bytes each counted item takes
+     * @return The count, if the remaining input can hold that many items
+     */
+    private static int checkCount(ByteBuffer buffer, int count, int size, String source) {
+        if (0 > count || count > buffer.remaining() / size)
+            throw new IllegalStateException(String.format("Corrupt snapshot, bad count %d: %s", count, source));
+        return count;
+    }
+
+    private static int checkIndex(int index, String[] strings, String source) {
+        if (0 > index || index >= strings.length)
+            throw new IllegalStateException(String.format("Corrupt snapshot, bad index %d: %s", index, source));
+        return index;
+    }
+
+    private static Map<String, String> toMap(Properties properties) {
+        Map<String, String> values = new HashMap<>();
+        for (String key: properties.stringPropertyNames())
+            values.put(key, properties.getProperty(key));
+        return values;
+    }
+
+    private static int intern(Map<String, Integer> strings, String string) {
+        Integer index = strings.get(string);
+        if (null == index) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+}
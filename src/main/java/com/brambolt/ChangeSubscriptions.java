@@ -0,0 +1,247 @@
+package com.brambolt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Notifies listeners of changes to exact keys or to the keys under a
+ * prefix.
+ *
+ * <p>Subscriptions are indexed by their key or prefix. Publishing a change
+ * looks up each changed key and each of its dotted prefixes in the index,
+ * so the cost depends on the number and depth of the changed keys, not on
+ * the number of subscriptions. As for key tries and views, prefixes match
+ * whole segments: <code>g.hosts</code> matches <code>g.hosts</code> and
+ * <code>g.hosts.a.address</code> but not <code>g.hostsfile</code>, and the
+ * empty prefix matches every key.</p>
+ *
+ * <p>Each subscription receives one <code>PropertyChanges</code> per
+ * publish, with all of its matching keys, on its executor. Notifications of
+ * one subscription never overlap and arrive in publish order; if changes
+ * are published while a notification is still waiting to run, they are
+ * merged into it, so a slow listener sees one combined diff rather than a
+ * backlog. The default executor is a single daemon thread shared by all
+ * subscriptions that don't name one. If an executor rejects a
+ * notification, its changes stay pending and are merged into the
+ * notification of the next publish.</p>
+ */
+public class ChangeSubscriptions {
+
+    private static final class DefaultExecutor {
+
+        static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "property-change-notifications");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A registered listener, which can be cancelled.
+     */
+    public final class Subscription {
+
+        private final String key;
+
+        private final boolean prefix;
+
+        private final PropertyListener listener;
+
+        private final Executor executor;
+
+        /**
+         * The old values of the changes not yet delivered; guarded by this.
+         */
+        private Map<String, String> pendingOldValues = new HashMap<>();
+
+        /**
+         * The new values of the changes not yet delivered; guarded by this.
+         */
+        private Map<String, String> pendingNewValues = new HashMap<>();
+
+        /**
+         * Whether a delivery is scheduled or running; guarded by this.
+         */
+        private boolean scheduled;
+
+        private volatile boolean cancelled;
+
+        private Subscription(String key, boolean prefix, PropertyListener listener, Executor executor) {
+            this.key = key;
+            this.prefix = prefix;
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        /**
+         * @return The subscribed key or prefix
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isPrefix() {
+            return prefix;
+        }
+
+        /**
+         * Stops notifications; a notification that is already running
+         * completes.
+         */
+        public void cancel() {
+            cancelled = true;
+            unsubscribe(this);
+        }
+
+        private synchronized void add(String changedKey, String oldValue, String newValue) {
+            if (!pendingOldValues.containsKey(changedKey))
+                pendingOldValues.put(changedKey, oldValue);
+            pendingNewValues.put(changedKey, newValue);
+            if (Objects.equals(pendingOldValues.get(changedKey), newValue)) {
+                // Changed back before delivery:
+                pendingOldValues.remove(changedKey);
+                pendingNewValues.remove(changedKey);
+            }
+        }
+
+        private synchronized void schedule() {
+            if (scheduled || pendingOldValues.isEmpty())
+                return;
+            scheduled = true;
+            try {
+                executor.execute(this::deliver);
+            } catch (RejectedExecutionException x) {
+                scheduled = false; // The changes stay pending for the next publish
+            }
+        }
+
+        private void deliver() {
+            PropertyChanges changes;
+            synchronized (this) {
+                changes = new PropertyChanges(pendingOldValues, pendingNewValues);
+                pendingOldValues = new HashMap<>();
+                pendingNewValues = new HashMap<>();
+            }
+            try {
+                if (!cancelled && !changes.isEmpty())
+                    listener.propertiesChanged(changes);
+            } finally {
+                synchronized (this) {
+                    scheduled = false;
+                    schedule();
+                }
+            }
+        }
+    }
+
+    /**
+     * The subscriptions by key or prefix.
+     */
+    private final Map<String, List<Subscription>> index = new HashMap<>();
+
+    /**
+     * Subscribes to the changes of one key.
+     *
+     * @param key The key
+     * @param listener The listener
+     * @return The subscription
+     */
+    public Subscription subscribeKey(String key, PropertyListener listener) {
+        return subscribe(key, false, listener, DefaultExecutor.INSTANCE);
+    }
+
+    public Subscription subscribeKey(String key, PropertyListener listener, Executor executor) {
+        return subscribe(key, false, listener, executor);
+    }
+
+    /**
+     * Subscribes to the changes of the keys under a prefix.
+     *
+     * @param prefix The prefix, without the trailing dot; empty for all keys
+     * @param listener The listener
+     * @return The subscription
+     */
+    public Subscription subscribe(String prefix, PropertyListener listener) {
+        return subscribe(prefix, true, listener, DefaultExecutor.INSTANCE);
+    }
+
+    public Subscription subscribe(String prefix, PropertyListener listener, Executor executor) {
+        return subscribe(prefix, true, listener, executor);
+    }
+
+    private Subscription subscribe(String key, boolean prefix, PropertyListener listener, Executor executor) {
+        if (prefix && key.endsWith("."))
+            key = key.substring(0, key.length() - 1);
+        Subscription subscription = new Subscription(key, prefix, listener, executor);
+        synchronized (index) {
+            index.computeIfAbsent(key, k -> new ArrayList<>()).add(subscription);
+        }
+        return subscription;
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        synchronized (index) {
+            List<Subscription> subscriptions = index.get(subscription.key);
+            if (null != subscriptions && subscriptions.remove(subscription) && subscriptions.isEmpty())
+                index.remove(subscription.key);
+        }
+    }
+
+    /**
+     * Notifies the subscriptions that match the changed keys.
+     *
+     * @param oldValues The values before the change
+     * @param newValues The values after the change
+     * @param changedKeys The keys whose values differ
+     */
+    public void publish(Map<String, String> oldValues, Map<String, String> newValues, Set<String> changedKeys) {
+        Set<Subscription> notified = new LinkedHashSet<>();
+        synchronized (index) {
+            if (index.isEmpty())
+                return;
+            for (String changedKey: changedKeys) {
+                String oldValue = oldValues.get(changedKey);
+                String newValue = newValues.get(changedKey);
+                match(index.get(changedKey), changedKey, oldValue, newValue, notified, true);
+                for (int end = changedKey.lastIndexOf('.'); 0 <= end; end = changedKey.lastIndexOf('.', end - 1))
+                    match(index.get(changedKey.substring(0, end)), changedKey, oldValue, newValue, notified, false);
+                if (!changedKey.isEmpty())
+                    match(index.get(""), changedKey, oldValue, newValue, notified, false);
+            }
+        }
+        for (Subscription subscription: notified)
+            subscription.schedule();
+    }
+
+    private static void match(List<Subscription> subscriptions, String changedKey, String oldValue, String newValue,
+                              Set<Subscription> notified, boolean exact) {
+        if (null == subscriptions)
+            return;
+        for (Subscription subscription: subscriptions)
+            if (exact || subscription.prefix) {
+                subscription.add(changedKey, oldValue, newValue);
+                notified.add(subscription);
+            }
+    }
+
+    /**
+     * @return The number of subscriptions
+     */
+    public int size() {
+        synchronized (index) {
+            int size = 0;
+            for (List<Subscription> subscriptions: index.values())
+                size += subscriptions.size();
+            return size;
+        }
+    }
+}
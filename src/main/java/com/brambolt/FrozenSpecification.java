@@ -0,0 +1,245 @@
+package com.brambolt;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * An immutable, flattened specification.
+ *
+ * <p>The defaults chain of the source properties is resolved once, when the
+ * frozen specification is created, and the resolved values are held in an
+ * unsynchronized map that is never modified after construction. Lookups
+ * through <code>#getProperty</code>, <code>#get</code>,
+ * <code>#containsKey</code> and the typed accessors read that map without
+ * taking the <code>Hashtable</code> monitor and without walking defaults,
+ * so any number of threads can read the same instance without
+ * contention.</p>
+ *
+ * <p>The resolved values are also copied into the underlying properties
+ * table (without defaults) so that iteration, <code>#store</code> and
+ * <code>Maps#convert</code> keep working. Every mutator throws
+ * <code>UnsupportedOperationException</code>, and the specification is
+ * sealed, so modifying it through its key, entry and value views throws
+ * too.</p>
+ *
+ * <p>When the load options track provenance, the origins of the source
+ * properties, including those found through its defaults, are carried
+ * over, so <code>#getOrigin</code> answers for the frozen copy too.</p>
+ */
+public class FrozenSpecification extends Specification {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a frozen specification from already resolved values.
+     *
+     * @param values The resolved values; the map is copied
+     * @return The frozen specification
+     */
+    public static FrozenSpecification of(Map<String, String> values) {
+        return of(values, null);
+    }
+
+    /**
+     * Creates a frozen specification from already resolved values.
+     *
+     * @param values The resolved values; the map is copied
+     * @param loadOptions The options to carry over, for instrumentation
+     * @return The frozen specification
+     */
+    public static FrozenSpecification of(Map<String, String> values, LoadOptions loadOptions) {
+        return new FrozenSpecification(values, loadOptions);
+    }
+
+    /**
+     * Creates a frozen specification from already resolved values and
+     * their origins.
+     *
+     * @param values The resolved values; the map is copied
+     * @param loadOptions The options to carry over; origins are only kept
+     *                    if they track provenance
+     * @param origins The origin of each value that has one
+     * @return The frozen specification
+     */
+    public static FrozenSpecification of(Map<String, String> values, LoadOptions loadOptions,
+                                         Map<String, Origin> origins) {
+        FrozenSpecification frozen = new FrozenSpecification(values, loadOptions);
+        for (Map.Entry<String, Origin> entry: origins.entrySet())
+            frozen.setOrigin(entry.getKey(), entry.getValue());
+        return frozen;
+    }
+
+    /**
+     * The resolved values, read without locking.
+     */
+    private final Map<String, String> values;
+
+    /**
+     * Receives lookups, or null; kept in a field to keep lookups short.
+     */
+    private final Instrumentation instrumentation;
+
+    protected FrozenSpecification(Properties source) {
+        super(null, (source instanceof Specification) ? ((Specification) source).getLoadOptions() : null);
+        this.instrumentation = getLoadOptions().getInstrumentation();
+        Map<String, String> resolved = new HashMap<>();
+        for (String key: source.stringPropertyNames()) {
+            String value = (source instanceof Specification)
+                ? ((Specification) source).getUninstrumentedProperty(key)
+                : source.getProperty(key);
+            resolved.put(key, value);
+            super.put(key, value);
+            if (source instanceof Specification && getLoadOptions().isTrackingProvenance())
+                setOrigin(key, ((Specification) source).getOrigin(key));
+        }
+        this.values = Collections.unmodifiableMap(resolved);
+        seal(); // Guards the iteration views of the table as well
+    }
+
+    protected FrozenSpecification(Map<String, String> source) {
+        this(source, null);
+    }
+
+    protected FrozenSpecification(Map<String, String> source, LoadOptions loadOptions) {
+        super(null, loadOptions);
+        this.instrumentation = getLoadOptions().getInstrumentation();
+        Map<String, String> resolved = new HashMap<>(source);
+        for (Map.Entry<String, String> entry: resolved.entrySet())
+            super.put(entry.getKey(), entry.getValue());
+        this.values = Collections.unmodifiableMap(resolved);
+        seal(); // Guards the iteration views of the table as well
+    }
+
+    /**
+     * Provides the resolved values as an unmodifiable map.
+     *
+     * @return The resolved values
+     */
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    /**
+     * A frozen specification is already frozen.
+     *
+     * @return This instance
+     */
+    @Override
+    public FrozenSpecification freeze() {
+        return this;
+    }
+
+    @Override
+    public String getProperty(String name) {
+        String value = values.get(name);
+        if (null != instrumentation)
+            instrumentation.lookup(name, null != value);
+        return value;
+    }
+
+    @Override
+    public String getProperty(String name, String defaultValue) {
+        String value = getProperty(name);
+        return (null != value) ? value : defaultValue;
+    }
+
+    @Override
+    public String get(Object name) {
+        return getProperty(name.toString());
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return values.containsKey(name);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        throw unsupported();
+    }
+
+    @Override
+    public void putAll(Map<?, ?> map) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        throw unsupported();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> function) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object computeIfAbsent(Object key, Function<? super Object, ?> function) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> function) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> function) {
+        throw unsupported();
+    }
+
+    @Override
+    public void clear() {
+        throw unsupported();
+    }
+
+    @Override
+    public void load(InputStream inputStream) {
+        throw unsupported();
+    }
+
+    @Override
+    public void load(Reader reader) {
+        throw unsupported();
+    }
+
+    @Override
+    public void loadFromXML(InputStream inputStream) {
+        throw unsupported();
+    }
+
+    private UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Frozen specifications can not be modified");
+    }
+}
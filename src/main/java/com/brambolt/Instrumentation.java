@@ -0,0 +1,37 @@
+package com.brambolt;
+
+/**
+ * Receives measurements from loading and looking up properties.
+ *
+ * <p>Instrumentation is enabled by passing an implementation in the load
+ * options. Implementations are called on the loading and looking up
+ * threads, so they must be thread-safe and cheap; see
+ * <code>SpecificationMetrics</code> for the standard implementation.</p>
+ */
+public interface Instrumentation {
+
+    /**
+     * Called after a resource or file was loaded.
+     *
+     * @param path The resource path or absolute file path
+     * @param nanos The time spent reading and parsing
+     * @param bytes The number of bytes read
+     */
+    void layerLoaded(String path, long nanos, long bytes);
+
+    /**
+     * Called for each property lookup.
+     *
+     * @param name The property name
+     * @param hit True if the property was found without consulting defaults
+     */
+    void lookup(String name, boolean hit);
+
+    /**
+     * Called after a reload that published new values.
+     *
+     * @param nanos The time spent reloading
+     * @param changed The number of properties that changed
+     */
+    void reloaded(long nanos, int changed);
+}
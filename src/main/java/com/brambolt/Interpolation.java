@@ -0,0 +1,311 @@
+package com.brambolt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves <code>${key}</code> references between property values.
+ *
+ * <p>Each value that contains references is compiled once into a sequence
+ * of literal and reference parts, and the references between keys are
+ * collected into a dependency graph, which is checked for cycles when the
+ * interpolation is created. Values are resolved on first access and
+ * memoized. A reference to a key without a value is left in place, as
+ * written.</p>
+ *
+ * <p>An interpolation is immutable and can be shared between threads. When
+ * some values change, <code>#update</code> creates the next interpolation
+ * from this one: only the changed values are compiled again, and only the
+ * changed keys and the keys that depend on them, directly or through other
+ * references, are resolved again; all other results are carried over.</p>
+ *
+ * <p>For example, with <code>hosts.a.address=a.example.com</code> and
+ * <code>hosts.a.url=https://${hosts.a.address}:${port}</code>, a change to
+ * <code>port</code> re-resolves only <code>hosts.a.url</code>.</p>
+ *
+ * @see Specification#getInterpolatedProperty(String)
+ */
+public final class Interpolation {
+
+    /**
+     * Compiles the values of the properties, including defaults.
+     *
+     * @param properties The properties to interpolate
+     * @return The interpolation
+     * @throws IllegalStateException If the references form a cycle
+     */
+    public static Interpolation of(Properties properties) {
+        Map<String, String> values = new HashMap<>();
+        for (String key: properties.stringPropertyNames())
+            values.put(key, (properties instanceof Specification)
+                ? ((Specification) properties).getUninstrumentedProperty(key)
+                : properties.getProperty(key));
+        return new Interpolation(values);
+    }
+
+    /**
+     * Compiles a map of values.
+     *
+     * @param values The values to interpolate; the map is copied
+     * @return The interpolation
+     * @throws IllegalStateException If the references form a cycle
+     */
+    public static Interpolation of(Map<String, String> values) {
+        return new Interpolation(new HashMap<>(values));
+    }
+
+    /**
+     * A compiled value: literal text alternating with references.
+     */
+    private static final class Expression {
+
+        /**
+         * The literal parts; there is one more literal than references.
+         */
+        final String[] literals;
+
+        /**
+         * The referenced keys.
+         */
+        final String[] references;
+
+        private Expression(String[] literals, String[] references) {
+            this.literals = literals;
+            this.references = references;
+        }
+
+        /**
+         * @return The compiled value, or null if it has no references
+         */
+        static Expression compile(String value) {
+            int start = value.indexOf("${");
+            if (0 > start)
+                return null;
+            List<String> literals = new ArrayList<>();
+            List<String> references = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int position = 0;
+            while (0 <= start) {
+                int end = value.indexOf('}', start + 2);
+                if (0 > end)
+                    break; // Unterminated, the rest is literal
+                literal.append(value, position, start);
+                if (end == start + 2)
+                    literal.append("${}"); // Nothing to look up
+                else {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    references.add(value.substring(start + 2, end));
+                }
+                position = end + 1;
+                start = value.indexOf("${", position);
+            }
+            if (references.isEmpty())
+                return null;
+            literals.add(literal.append(value, position, value.length()).toString());
+            return new Expression(literals.toArray(new String[0]), references.toArray(new String[0]));
+        }
+    }
+
+    private final Map<String, String> values;
+
+    /**
+     * The compiled values, for the values with references.
+     */
+    private final Map<String, Expression> expressions;
+
+    /**
+     * For each referenced key, the keys whose values reference it.
+     */
+    private final Map<String, Set<String>> dependents;
+
+    private final Map<String, String> resolved;
+
+    private Interpolation(Map<String, String> values) {
+        this.values = values;
+        this.expressions = new HashMap<>();
+        this.dependents = new HashMap<>();
+        this.resolved = new ConcurrentHashMap<>();
+        for (Map.Entry<String, String> entry: values.entrySet()) {
+            Expression expression = Expression.compile(entry.getValue());
+            if (null != expression) {
+                expressions.put(entry.getKey(), expression);
+                addDependents(entry.getKey(), expression, null);
+            }
+        }
+        checkCycles(expressions.keySet());
+    }
+
+    private Interpolation(Map<String, String> values, Map<String, Expression> expressions,
+                          Map<String, Set<String>> dependents, Map<String, String> resolved) {
+        this.values = values;
+        this.expressions = expressions;
+        this.dependents = dependents;
+        this.resolved = resolved;
+    }
+
+    /**
+     * Provides the value of a key with its references resolved.
+     *
+     * @param key The key
+     * @return The resolved value, or null if the key has no value
+     */
+    public String get(String key) {
+        String value = resolved.get(key);
+        if (null != value)
+            return value;
+        value = values.get(key);
+        if (null == value)
+            return null;
+        Expression expression = expressions.get(key);
+        if (null == expression)
+            return value; // Nothing to resolve, nothing to memoize
+        StringBuilder builder = new StringBuilder(expression.literals[0]);
+        for (int i = 0; i < expression.references.length; ++i) {
+            String reference = expression.references[i];
+            String referenced = get(reference);
+            if (null != referenced)
+                builder.append(referenced);
+            else
+                builder.append("${").append(reference).append('}');
+            builder.append(expression.literals[i + 1]);
+        }
+        value = builder.toString();
+        resolved.put(key, value);
+        return value;
+    }
+
+    /**
+     * @param key The key
+     * @return The keys the value of the key references directly
+     */
+    public Set<String> getDependencies(String key) {
+        Expression expression = expressions.get(key);
+        if (null == expression)
+            return Collections.emptySet();
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(expression.references)));
+    }
+
+    /**
+     * Finds the keys whose resolved values can depend on the given keys.
+     *
+     * @param keys The keys
+     * @return The keys and all keys that reference them, directly or not
+     */
+    public Set<String> getAffected(Set<String> keys) {
+        Set<String> affected = new HashSet<>();
+        List<String> pending = new ArrayList<>(keys);
+        while (!pending.isEmpty()) {
+            String key = pending.remove(pending.size() - 1);
+            if (!affected.add(key))
+                continue;
+            Set<String> referencing = dependents.get(key);
+            if (null != referencing)
+                pending.addAll(referencing);
+        }
+        return affected;
+    }
+
+    /**
+     * Creates the interpolation for changed values. The changed keys are
+     * compiled again, the dependency graph is adjusted for them and the
+     * results that can't have changed are carried over.
+     *
+     * @param next The next values; the map is copied
+     * @param changedKeys The keys whose values changed, were added or were removed
+     * @return The next interpolation
+     * @throws IllegalStateException If the changed references form a cycle
+     */
+    public Interpolation update(Map<String, String> next, Set<String> changedKeys) {
+        Map<String, String> nextValues = new HashMap<>(next);
+        Map<String, Expression> nextExpressions = new HashMap<>(expressions);
+        Map<String, Set<String>> nextDependents = new HashMap<>(dependents);
+        Set<String> affected = getAffected(changedKeys);
+        Interpolation result = new Interpolation(
+            nextValues, nextExpressions, nextDependents, new ConcurrentHashMap<>());
+        // The dependent sets are shared with this interpolation until copied:
+        Set<String> copied = new HashSet<>();
+        for (String key: changedKeys) {
+            Expression previous = nextExpressions.remove(key);
+            if (null != previous)
+                result.removeDependents(key, previous, copied);
+            String value = nextValues.get(key);
+            Expression expression = (null != value) ? Expression.compile(value) : null;
+            if (null != expression) {
+                nextExpressions.put(key, expression);
+                result.addDependents(key, expression, copied);
+            }
+        }
+        result.checkCycles(changedKeys);
+        affected.addAll(result.getAffected(changedKeys));
+        for (Map.Entry<String, String> entry: resolved.entrySet())
+            if (!affected.contains(entry.getKey()))
+                result.resolved.put(entry.getKey(), entry.getValue());
+        return result;
+    }
+
+    /**
+     * @param copied The referenced keys whose dependent sets this instance
+     *               owns, or null if it owns all of them
+     */
+    private void addDependents(String key, Expression expression, Set<String> copied) {
+        for (String reference: expression.references)
+            ownedDependents(reference, copied).add(key);
+    }
+
+    private void removeDependents(String key, Expression expression, Set<String> copied) {
+        for (String reference: expression.references) {
+            if (!dependents.containsKey(reference))
+                continue;
+            Set<String> referencing = ownedDependents(reference, copied);
+            referencing.remove(key);
+            if (referencing.isEmpty())
+                dependents.remove(reference);
+        }
+    }
+
+    private Set<String> ownedDependents(String reference, Set<String> copied) {
+        Set<String> referencing = dependents.get(reference);
+        if (null == referencing || (null != copied && copied.add(reference))) {
+            referencing = (null != referencing) ? new HashSet<>(referencing) : new HashSet<>();
+            dependents.put(reference, referencing);
+        }
+        return referencing;
+    }
+
+    /**
+     * Checks that no reference path from the given keys leads back to a key
+     * on the same path.
+     */
+    private void checkCycles(Set<String> keys) {
+        Set<String> done = new HashSet<>();
+        for (String key: keys)
+            checkCycles(key, new LinkedHashSet<>(), done);
+    }
+
+    private void checkCycles(String key, LinkedHashSet<String> path, Set<String> done) {
+        if (done.contains(key))
+            return;
+        if (!path.add(key)) {
+            List<String> cycle = new ArrayList<>(path);
+            cycle = cycle.subList(cycle.indexOf(key), cycle.size());
+            throw new IllegalStateException(
+                "Cyclic property references: " + String.join(" -> ", cycle) + " -> " + key);
+        }
+        Expression expression = expressions.get(key);
+        if (null != expression)
+            for (String reference: expression.references)
+                checkCycles(reference, path, done);
+        path.remove(key);
+        done.add(key);
+    }
+}
@@ -0,0 +1,84 @@
+package com.brambolt;
+
+/**
+ * Canonical key strings, looked up by character content.
+ *
+ * <p>The parser decodes each key into a scratch buffer and looks it up here
+ * before creating a string, so a key that was already loaded by an earlier
+ * layer is not allocated again and all layers, origins and the merged
+ * properties share one instance per key. The table is an open-addressing
+ * hash table with linear probing over the key strings themselves.</p>
+ *
+ * <p>With a value pool, new keys are also pooled, so the keys are shared
+ * between specifications as well.</p>
+ */
+final class KeyTable {
+
+    /**
+     * Shares new keys between specifications, or null.
+     */
+    private final ValuePool valuePool;
+
+    private String[] keys = new String[64];
+
+    private int size;
+
+    KeyTable(ValuePool valuePool) {
+        this.valuePool = valuePool;
+    }
+
+    synchronized String intern(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = keys.length - 1;
+        int index = hash & mask;
+        String key;
+        while (null != (key = keys[index])) {
+            if (key.hashCode() == hash && matches(key, chars, offset, length))
+                return key;
+            index = (index + 1) & mask;
+        }
+        key = new String(chars, offset, length);
+        if (null != valuePool)
+            key = valuePool.intern(key);
+        keys[index] = key;
+        if (++size > keys.length / 2)
+            grow();
+        return key;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void grow() {
+        String[] old = keys;
+        keys = new String[2 * old.length];
+        int mask = keys.length - 1;
+        for (String key: old)
+            if (null != key) {
+                int index = key.hashCode() & mask;
+                while (null != keys[index])
+                    index = (index + 1) & mask;
+                keys[index] = key;
+            }
+    }
+
+    /**
+     * Computes the same hash as <code>String#hashCode</code>.
+     */
+    private static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; ++i)
+            hash = 31 * hash + chars[i];
+        return hash;
+    }
+
+    private static boolean matches(String key, char[] chars, int offset, int length) {
+        if (key.length() != length)
+            return false;
+        for (int i = 0; i < length; ++i)
+            if (key.charAt(i) != chars[offset + i])
+                return false;
+        return true;
+    }
+}
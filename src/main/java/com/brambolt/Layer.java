@@ -0,0 +1,173 @@
+package com.brambolt;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The properties loaded from a single resource or file.
+ *
+ * <p>Specifications record their layers, in load order, when the load
+ * options ask for it. File-backed layers also record the modification time
+ * and length of the file at the time it was read, so that a reload can tell
+ * whether the layer needs to be read again.</p>
+ *
+ * <p>When the load options track provenance, layers also record the line
+ * each key was read from, so the origins of a reloaded layer can be
+ * recorded again.</p>
+ */
+public class Layer {
+
+    /**
+     * Reads a properties file into a layer with the default load options.
+     *
+     * @param file The file to read
+     * @return The layer
+     * @throws IllegalStateException If the file can't be read
+     */
+    public static Layer read(File file) {
+        return read(file, LoadOptions.defaults());
+    }
+
+    /**
+     * Reads a properties file into a layer.
+     *
+     * <p>The file statistics are captured before the file is read, so a
+     * change made while reading is detected on the next check.</p>
+     *
+     * @param file The file to read
+     * @param loadOptions The options for the encoding, value pool, provenance and instrumentation
+     * @return The layer
+     * @throws IllegalStateException If the file can't be read
+     */
+    public static Layer read(File file, LoadOptions loadOptions) {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Properties values = new Properties();
+        Map<String, Integer> lines = loadOptions.isTrackingProvenance() ? new HashMap<>() : null;
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            Specification.readProperties(file.getAbsolutePath(), inputStream, values, lines, loadOptions, null);
+        } catch (FileNotFoundException x) {
+            throw new IllegalStateException("Properties file not found: " + file.getAbsolutePath(), x);
+        } catch (IOException x) {
+            throw new IllegalStateException("Unable to load properties file: " + file.getAbsolutePath(), x);
+        }
+        return new Layer(file.getAbsolutePath(), file, lastModified, length, values, lines);
+    }
+
+    /**
+     * Creates an empty layer for a file that does not exist (yet).
+     *
+     * @param file The missing file
+     * @return An empty layer that is modified once the file appears
+     */
+    public static Layer missing(File file) {
+        return new Layer(file.getAbsolutePath(), file, 0L, 0L, new Properties(), null);
+    }
+
+    private final String path;
+
+    private final File file;
+
+    private final long lastModified;
+
+    private final long length;
+
+    private final Properties values;
+
+    /**
+     * The line number of each key, or null if provenance was not tracked.
+     */
+    private final Map<String, Integer> lines;
+
+    public Layer(String path, Properties values) {
+        this(path, values, null);
+    }
+
+    /**
+     * @param path The resource path
+     * @param values The properties
+     * @param lines The line number of each key, or null
+     */
+    public Layer(String path, Properties values, Map<String, Integer> lines) {
+        this(path, null, 0L, 0L, values, lines);
+    }
+
+    protected Layer(String path, File file, long lastModified, long length, Properties values) {
+        this(path, file, lastModified, length, values, null);
+    }
+
+    protected Layer(String path, File file, long lastModified, long length, Properties values,
+                    Map<String, Integer> lines) {
+        this.path = path;
+        this.file = file;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.values = values;
+        this.lines = (null != lines) ? Collections.unmodifiableMap(lines) : null;
+    }
+
+    /**
+     * @return The resource path or absolute file path the layer was read from
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The file the layer was read from, or null for resources
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public Properties getValues() {
+        return values;
+    }
+
+    /**
+     * @return The unmodifiable line number of each key, or null if
+     *         provenance was not tracked when the layer was read
+     */
+    public Map<String, Integer> getLines() {
+        return lines;
+    }
+
+    /**
+     * Checks whether the underlying file has changed since it was read.
+     * Resource layers are never modified.
+     *
+     * @return True iff the layer should be read again
+     */
+    public boolean isModified() {
+        return null != file
+            && (file.lastModified() != lastModified || file.length() != length);
+    }
+
+    /**
+     * Reads the underlying file again with the default load options.
+     *
+     * @return The reloaded layer
+     */
+    public Layer reload() {
+        return reload(LoadOptions.defaults());
+    }
+
+    /**
+     * Reads the underlying file again; a file that was removed produces an
+     * empty layer.
+     *
+     * @param loadOptions The options for the encoding, value pool, provenance and instrumentation
+     * @return The reloaded layer
+     */
+    public Layer reload(LoadOptions loadOptions) {
+        if (null == file)
+            return this;
+        return file.exists() ? read(file, loadOptions) : missing(file);
+    }
+}
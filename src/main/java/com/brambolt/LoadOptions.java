@@ -0,0 +1,240 @@
+package com.brambolt;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Controls how a specification loads its properties.
+ *
+ * <p>Options are immutable; each <code>with</code> method returns a modified
+ * copy. The defaults reproduce the original loading behavior.</p>
+ *
+ * <p>Options are equal when all their settings are; the executor,
+ * instrumentation, resource index and value pool are compared by
+ * identity. Equal options load equal properties, which is what lets
+ * <code>InstancePropertiesRegistry</code> share them.</p>
+ */
+public class LoadOptions {
+
+    private static final LoadOptions DEFAULTS = new LoadOptions();
+
+    public static LoadOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Fetches and parses listed resources concurrently when not null.
+     */
+    private Executor executor;
+
+    /**
+     * Retains the properties of each loaded resource or file when true.
+     */
+    private boolean recordingLayers;
+
+    /**
+     * Receives load timings and lookup counts when not null.
+     */
+    private Instrumentation instrumentation;
+
+    /**
+     * Records the origin of each loaded property when true.
+     */
+    private boolean trackingProvenance;
+
+    /**
+     * The encoding of loaded properties resources and files.
+     */
+    private Charset charset = StandardCharsets.ISO_8859_1;
+
+    /**
+     * Answers whether resources exist, or null to look for each one.
+     */
+    private ResourceIndex resourceIndex;
+
+    /**
+     * Shares equal keys, values and unit maps between instances, or null.
+     */
+    private ValuePool valuePool;
+
+    private LoadOptions() {}
+
+    private LoadOptions copy() {
+        LoadOptions copy = new LoadOptions();
+        copy.executor = executor;
+        copy.recordingLayers = recordingLayers;
+        copy.instrumentation = instrumentation;
+        copy.trackingProvenance = trackingProvenance;
+        copy.charset = charset;
+        copy.resourceIndex = resourceIndex;
+        copy.valuePool = valuePool;
+        return copy;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Enables parallel loading of listed resources.
+     *
+     * <p>When a list property names several resources, each resource is
+     * fetched and parsed into its own properties on the executor, and the
+     * results are merged in list order once all are available. The override
+     * order is the same as for serial loading. Different lists are still
+     * loaded one after another, since a listed resource can define the
+     * listing that is loaded next.</p>
+     *
+     * <p>For example, <code>ForkJoinPool.commonPool()</code>.</p>
+     *
+     * @param executor The executor to load with, or null to load serially
+     * @return A copy of these options with the executor
+     */
+    public LoadOptions withExecutor(Executor executor) {
+        LoadOptions copy = copy();
+        copy.executor = executor;
+        return copy;
+    }
+
+    public boolean isRecordingLayers() {
+        return recordingLayers;
+    }
+
+    /**
+     * Makes the specification retain each loaded resource or file as a
+     * separate <code>Layer</code>, in load order, in addition to the merged
+     * properties. The layers share the key and value strings of the merged
+     * properties but do cost an additional table per layer.
+     *
+     * @param recordingLayers Whether to record layers
+     * @return A copy of these options with the setting
+     */
+    public LoadOptions withRecordingLayers(boolean recordingLayers) {
+        LoadOptions copy = copy();
+        copy.recordingLayers = recordingLayers;
+        return copy;
+    }
+
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Reports the time and size of each loaded resource or file, each
+     * property lookup and each reload to the instrumentation. Frozen copies
+     * of the specification report to the same instrumentation.
+     *
+     * @param instrumentation The instrumentation, or null for none
+     * @return A copy of these options with the instrumentation
+     */
+    public LoadOptions withInstrumentation(Instrumentation instrumentation) {
+        LoadOptions copy = copy();
+        copy.instrumentation = instrumentation;
+        return copy;
+    }
+
+    public boolean isTrackingProvenance() {
+        return trackingProvenance;
+    }
+
+    /**
+     * Makes the specification record, for each loaded property, the path and
+     * line it was loaded from and the values it overrode; see
+     * <code>Specification#getOrigin</code>. When provenance is not tracked
+     * nothing is recorded and overridden values are not retained.
+     *
+     * @param trackingProvenance Whether to track provenance
+     * @return A copy of these options with the setting
+     */
+    public LoadOptions withProvenance(boolean trackingProvenance) {
+        LoadOptions copy = copy();
+        copy.trackingProvenance = trackingProvenance;
+        return copy;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Sets the encoding of loaded properties resources and files. The
+     * default is ISO-8859-1, as for <code>Properties#load(InputStream)</code>;
+     * UTF-8 is the only alternative. Escapes are decoded with either.
+     *
+     * @param charset Either ISO-8859-1 or UTF-8
+     * @return A copy of these options with the encoding
+     * @throws IllegalArgumentException If the encoding is not supported
+     */
+    public LoadOptions withCharset(Charset charset) {
+        if (!StandardCharsets.ISO_8859_1.equals(charset) && !StandardCharsets.UTF_8.equals(charset))
+            throw new IllegalArgumentException("Unsupported properties encoding: " + charset);
+        LoadOptions copy = copy();
+        copy.charset = charset;
+        return copy;
+    }
+
+    public ResourceIndex getResourceIndex() {
+        return resourceIndex;
+    }
+
+    /**
+     * Skips the class path search for resources the index knows are
+     * missing. Optional layers that don't exist are then skipped without an
+     * exception, and required resources that don't exist fail as before but
+     * without a search.
+     *
+     * <p>For example, <code>ResourceIndex.probing()</code>.</p>
+     *
+     * @param resourceIndex The resource index, or null for none
+     * @return A copy of these options with the resource index
+     */
+    public LoadOptions withResourceIndex(ResourceIndex resourceIndex) {
+        LoadOptions copy = copy();
+        copy.resourceIndex = resourceIndex;
+        return copy;
+    }
+
+    public ValuePool getValuePool() {
+        return valuePool;
+    }
+
+    /**
+     * Shares equal keys, values and unit maps with every other
+     * specification loaded with the same pool. Pooled unit maps in the
+     * structured views are unmodifiable.
+     *
+     * @param valuePool The pool, or null for none
+     * @return A copy of these options with the pool
+     * @see ValuePool
+     */
+    public LoadOptions withValuePool(ValuePool valuePool) {
+        LoadOptions copy = copy();
+        copy.valuePool = valuePool;
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof LoadOptions))
+            return false;
+        LoadOptions options = (LoadOptions) other;
+        return executor == options.executor
+            && recordingLayers == options.recordingLayers
+            && instrumentation == options.instrumentation
+            && trackingProvenance == options.trackingProvenance
+            && charset.equals(options.charset)
+            && resourceIndex == options.resourceIndex
+            && valuePool == options.valuePool;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            System.identityHashCode(executor), recordingLayers, System.identityHashCode(instrumentation),
+            trackingProvenance, charset, System.identityHashCode(resourceIndex), System.identityHashCode(valuePool));
+    }
+}
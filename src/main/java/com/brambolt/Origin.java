@@ -0,0 +1,69 @@
+package com.brambolt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where a property value was loaded from.
+ *
+ * <p>Each origin links to the origin of the value it overrode, so the full
+ * override history of a property can be followed from the winning
+ * value back to the first layer that defined it.</p>
+ */
+public class Origin {
+
+    private final String path;
+
+    private final int line;
+
+    private final String value;
+
+    private final Origin overridden;
+
+    public Origin(String path, int line, String value, Origin overridden) {
+        this.path = path;
+        this.line = line;
+        this.value = value;
+        this.overridden = overridden;
+    }
+
+    /**
+     * @return The resource path or absolute file path the value was loaded from
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The line number (starting at one) the property starts on
+     */
+    public int getLine() {
+        return line;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return The origin of the value this value overrode, or null
+     */
+    public Origin getOverridden() {
+        return overridden;
+    }
+
+    /**
+     * @return The overridden values, most recently overridden first
+     */
+    public List<String> getOverriddenValues() {
+        List<String> values = new ArrayList<>();
+        for (Origin origin = overridden; null != origin; origin = origin.overridden)
+            values.add(origin.value);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return path + ":" + line;
+    }
+}
@@ -0,0 +1,118 @@
+package com.brambolt;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A property value parsed to a particular type, along with the raw value and
+ * the modification stamp of the specification it was parsed at.
+ *
+ * <p>Instances are immutable and are cached per key by
+ * <code>Specification</code>, so that the typed accessors only parse a value
+ * when the raw value actually changes. Numeric and boolean values are held
+ * both as primitive bits (for the primitive accessors) and in boxed form
+ * (for the boxed accessors), so neither needs to allocate on a cache hit.</p>
+ */
+final class ParsedValue {
+
+    enum Kind { STRING, BOOLEAN, INT, LONG, DOUBLE, DURATION }
+
+    final Kind kind;
+
+    final long version;
+
+    /**
+     * The raw value that was parsed, or null if the property is not present.
+     */
+    final String raw;
+
+    /**
+     * Whether the raw value was found without consulting defaults, for
+     * instrumentation.
+     */
+    final boolean hit;
+
+    final long bits;
+
+    final Object value;
+
+    private ParsedValue(Kind kind, long version, String raw, boolean hit, long bits, Object value) {
+        this.kind = kind;
+        this.version = version;
+        this.raw = raw;
+        this.hit = hit;
+        this.bits = bits;
+        this.value = value;
+    }
+
+    boolean isPresent() {
+        return null != raw;
+    }
+
+    /**
+     * Re-stamps this value with a later version, when the raw value did not
+     * change and there is no need to parse it again.
+     *
+     * @param version The current specification version
+     * @param hit Whether the raw value was found without consulting defaults
+     * @return A parsed value for the version
+     */
+    ParsedValue at(long version, boolean hit) {
+        return new ParsedValue(kind, version, raw, hit, bits, value);
+    }
+
+    static ParsedValue parse(String name, Kind kind, long version, String raw, boolean hit) {
+        if (null == raw)
+            return new ParsedValue(kind, version, null, hit, 0L, null);
+        switch (kind) {
+            case STRING:
+                return new ParsedValue(kind, version, raw, hit, 0L, raw);
+            case BOOLEAN:
+                boolean b = Boolean.parseBoolean(raw);
+                return new ParsedValue(kind, version, raw, hit, b ? 1L : 0L, Boolean.valueOf(b));
+            case INT:
+                try {
+                    int i = Integer.parseInt(raw);
+                    return new ParsedValue(kind, version, raw, hit, i, Integer.valueOf(i));
+                } catch (NumberFormatException x) {
+                    throw new RuntimeException("Not an integer property: " + name, x);
+                }
+            case LONG:
+                try {
+                    long l = Long.parseLong(raw);
+                    return new ParsedValue(kind, version, raw, hit, l, Long.valueOf(l));
+                } catch (NumberFormatException x) {
+                    throw new RuntimeException("Not a long property: " + name, x);
+                }
+            case DOUBLE:
+                try {
+                    double d = Double.parseDouble(raw);
+                    return new ParsedValue(kind, version, raw, hit, Double.doubleToRawLongBits(d), Double.valueOf(d));
+                } catch (NumberFormatException x) {
+                    throw new RuntimeException("Not a double property: " + name, x);
+                }
+            case DURATION:
+                try {
+                    Duration duration = parseDuration(raw.trim());
+                    return new ParsedValue(kind, version, raw, hit, duration.toMillis(), duration);
+                } catch (NumberFormatException | DateTimeParseException | ArithmeticException x) {
+                    throw new RuntimeException("Not a duration property: " + name, x);
+                }
+            default:
+                throw new IllegalArgumentException("Unsupported kind: " + kind);
+        }
+    }
+
+    /**
+     * Durations are either ISO-8601 (<code>PT30S</code>) or a plain number of
+     * milliseconds (<code>30000</code>).
+     *
+     * @param raw The raw value to parse
+     * @return The parsed duration
+     */
+    private static Duration parseDuration(String raw) {
+        if (!raw.isEmpty() && (Character.toUpperCase(raw.charAt(0)) == 'P' || raw.startsWith("-P") || raw.startsWith("-p")))
+            return Duration.parse(raw);
+        return Duration.ofMillis(Long.parseLong(raw));
+    }
+}
@@ -0,0 +1,330 @@
+package com.brambolt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses properties from a byte stream with the same rules as
+ * <code>Properties#load(InputStream)</code>, reporting the line number each
+ * property starts on.
+ *
+ * <p>Logical lines are joined across backslash continuations, comments and
+ * blank lines are skipped and <code>\\uxxxx</code> and the other escapes
+ * are decoded in keys and values, all exactly as the JDK does it. The
+ * parser works on the bytes directly, in a single pass, without a reader,
+ * and hands each property to the handler as soon as it is decoded.</p>
+ *
+ * <p>Bytes are decoded as ISO-8859-1, like <code>Properties#load</code>, or
+ * as UTF-8; malformed UTF-8 sequences decode to U+FFFD. Keys can be
+ * canonicalized through a key table, so keys that repeat across layers are
+ * only allocated once.</p>
+ */
+final class PropertiesParser {
+
+    /**
+     * Receives the parsed properties, in file order.
+     */
+    interface Handler {
+
+        /**
+         * @param key The decoded key
+         * @param value The decoded value
+         * @param line The line number (starting at one) the property starts on
+         */
+        void property(String key, String value, int line);
+    }
+
+    private final InputStream inputStream;
+
+    private final boolean utf8;
+
+    /**
+     * Canonicalizes keys, or null.
+     */
+    private final KeyTable keyTable;
+
+    /**
+     * The low surrogate of a decoded supplementary character, or -1.
+     */
+    private int pendingLowSurrogate = -1;
+
+    private final byte[] buffer = new byte[8192];
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * The current logical line.
+     */
+    private char[] line = new char[256];
+
+    /**
+     * Scratch space for decoding escapes.
+     */
+    private char[] converted = new char[256];
+
+    /**
+     * The natural line number of the next character.
+     */
+    private int lineNumber = 1;
+
+    /**
+     * The natural line number the current logical line started on.
+     */
+    private int lineStart;
+
+    private boolean afterCarriageReturn;
+
+    private PropertiesParser(InputStream inputStream, Charset charset, KeyTable keyTable) {
+        if (!StandardCharsets.ISO_8859_1.equals(charset) && !StandardCharsets.UTF_8.equals(charset))
+            throw new IllegalArgumentException("Unsupported properties encoding: " + charset);
+        this.inputStream = inputStream;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.keyTable = keyTable;
+    }
+
+    static void parse(InputStream inputStream, Handler handler) throws IOException {
+        parse(inputStream, StandardCharsets.ISO_8859_1, null, handler);
+    }
+
+    /**
+     * @param inputStream The stream to parse
+     * @param charset Either ISO-8859-1 or UTF-8
+     * @param keyTable Canonicalizes keys, or null
+     * @param handler Receives the properties
+     * @throws IOException If the stream can't be read
+     */
+    static void parse(InputStream inputStream, Charset charset, KeyTable keyTable, Handler handler) throws IOException {
+        new PropertiesParser(inputStream, charset, keyTable).parse(handler);
+    }
+
+    private void parse(Handler handler) throws IOException {
+        int length;
+        while (0 <= (length = readLine())) {
+            int keyLength = 0;
+            int valueStart = length;
+            boolean hasSeparator = false;
+            boolean precedingBackslash = false;
+            while (keyLength < length) {
+                char c = line[keyLength];
+                if ((c == '=' || c == ':') && !precedingBackslash) {
+                    valueStart = keyLength + 1;
+                    hasSeparator = true;
+                    break;
+                } else if ((c == ' ' || c == '\t' || c == '\f') && !precedingBackslash) {
+                    valueStart = keyLength + 1;
+                    break;
+                }
+                precedingBackslash = (c == '\\') && !precedingBackslash;
+                ++keyLength;
+            }
+            while (valueStart < length) {
+                char c = line[valueStart];
+                if (c != ' ' && c != '\t' && c != '\f') {
+                    if (!hasSeparator && (c == '=' || c == ':'))
+                        hasSeparator = true;
+                    else
+                        break;
+                }
+                ++valueStart;
+            }
+            String key = convert(0, keyLength, keyTable);
+            String value = convert(valueStart, length - valueStart, null);
+            handler.property(key, value, lineStart);
+        }
+    }
+
+    /**
+     * Reads the next character, or -1 at the end of the stream.
+     */
+    private int read() throws IOException {
+        if (0 <= pendingLowSurrogate) {
+            int c = pendingLowSurrogate;
+            pendingLowSurrogate = -1;
+            return c;
+        }
+        int b = readByte();
+        if (!utf8 || 0x80 > b)
+            return b; // ISO-8859-1, or the end of the stream
+        int continuations;
+        int codePoint;
+        if (0xc2 <= b && 0xdf >= b) {
+            continuations = 1;
+            codePoint = b & 0x1f;
+        } else if (0xe0 <= b && 0xef >= b) {
+            continuations = 2;
+            codePoint = b & 0x0f;
+        } else if (0xf0 <= b && 0xf4 >= b) {
+            continuations = 3;
+            codePoint = b & 0x07;
+        } else
+            return 0xfffd;
+        for (int i = 0; i < continuations; ++i) {
+            if ((position >= limit && !fill()) || 0x80 != (buffer[position] & 0xc0))
+                return 0xfffd; // Leave the unexpected byte for the next read
+            codePoint = (codePoint << 6) | (readByte() & 0x3f);
+        }
+        if ((2 == continuations && (0x800 > codePoint || Character.isSurrogate((char) codePoint)))
+            || (3 == continuations && (0x10000 > codePoint || Character.MAX_CODE_POINT < codePoint)))
+            return 0xfffd; // Overlong, surrogate or out of range
+        if (Character.isBmpCodePoint(codePoint))
+            return codePoint;
+        pendingLowSurrogate = Character.lowSurrogate(codePoint);
+        return Character.highSurrogate(codePoint);
+    }
+
+    /**
+     * Reads the next byte, or -1 at the end of the stream, counting lines.
+     */
+    private int readByte() throws IOException {
+        if (position >= limit && !fill())
+            return -1;
+        int b = 0xff & buffer[position++];
+        if (b == '\n') {
+            if (!afterCarriageReturn)
+                ++lineNumber;
+        } else if (b == '\r')
+            ++lineNumber;
+        afterCarriageReturn = b == '\r';
+        return b;
+    }
+
+    /**
+     * Checks whether the next byte is a line feed, without consuming it.
+     */
+    private boolean isLineFeedNext() throws IOException {
+        return (position < limit || fill()) && buffer[position] == '\n';
+    }
+
+    private boolean fill() throws IOException {
+        limit = inputStream.read(buffer);
+        position = 0;
+        return 0 < limit;
+    }
+
+    /**
+     * Reads the next logical line into the line buffer, skipping comments,
+     * blank lines and leading white space and joining continuation lines.
+     *
+     * <p>This follows <code>Properties.LineReader</code> of current JDKs,
+     * which differs from Java 8 only in rare cases such as a comment marker
+     * directly after a continuation of an otherwise empty line.</p>
+     *
+     * @return The length of the logical line, or -1 at the end of the stream
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        boolean skipWhiteSpace = true;
+        boolean appendedLineBegin = false;
+        boolean precedingBackslash = false;
+        while (true) {
+            int b = read();
+            if (-1 == b) {
+                if (0 == length)
+                    return -1;
+                return precedingBackslash ? length - 1 : length;
+            }
+            char c = (char) b;
+            if (skipWhiteSpace) {
+                if (c == ' ' || c == '\t' || c == '\f')
+                    continue;
+                if (!appendedLineBegin && (c == '\r' || c == '\n'))
+                    continue;
+                skipWhiteSpace = false;
+                appendedLineBegin = false;
+            }
+            if (0 == length && (c == '#' || c == '!')) {
+                // A comment, skip the rest of the natural line:
+                do {
+                    b = read();
+                    if (-1 == b)
+                        return -1;
+                } while (b != '\r' && b != '\n');
+                skipWhiteSpace = true;
+                continue;
+            }
+            if (c != '\n' && c != '\r') {
+                if (0 == length)
+                    lineStart = lineNumber;
+                append(length++, c);
+                precedingBackslash = (c == '\\') && !precedingBackslash;
+            } else {
+                if (0 == length) {
+                    skipWhiteSpace = true;
+                    continue;
+                }
+                if (position >= limit && !fill())
+                    return precedingBackslash ? length - 1 : length;
+                if (precedingBackslash) {
+                    // The backslash is not part of the line:
+                    --length;
+                    skipWhiteSpace = true;
+                    appendedLineBegin = true;
+                    precedingBackslash = false;
+                    if (c == '\r' && isLineFeedNext())
+                        read();
+                } else
+                    return length;
+            }
+        }
+    }
+
+    private void append(int index, char c) {
+        if (index >= line.length)
+            line = Arrays.copyOf(line, 2 * line.length);
+        line[index] = c;
+    }
+
+    /**
+     * Decodes the escapes in part of the line buffer.
+     *
+     * @param keyTable Canonicalizes the result, or null
+     */
+    private String convert(int offset, int length, KeyTable keyTable) {
+        if (converted.length < length)
+            converted = new char[Math.max(length, 2 * converted.length)];
+        char[] out = converted;
+        int outLength = 0;
+        int end = offset + length;
+        while (offset < end) {
+            char c = line[offset++];
+            if (c != '\\') {
+                out[outLength++] = c;
+                continue;
+            }
+            if (offset >= end)
+                break; // A lone trailing backslash is dropped
+            c = line[offset++];
+            if (c == 'u') {
+                if (offset + 4 > end)
+                    throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                int value = 0;
+                for (int i = 0; i < 4; ++i) {
+                    c = line[offset++];
+                    int digit = Character.digit(c, 16);
+                    if (0 > digit)
+                        throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                    value = (value << 4) + digit;
+                }
+                out[outLength++] = (char) value;
+            } else {
+                if (c == 't')
+                    c = '\t';
+                else if (c == 'r')
+                    c = '\r';
+                else if (c == 'n')
+                    c = '\n';
+                else if (c == 'f')
+                    c = '\f';
+                out[outLength++] = c;
+            }
+        }
+        return (null != keyTable)
+            ? keyTable.intern(out, 0, outLength)
+            : new String(out, 0, outLength);
+    }
+}
@@ -0,0 +1,63 @@
+package com.brambolt;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes to a set of properties, as old and new values by key.
+ *
+ * <p>A property that was added has no old value and a property that was
+ * removed has no new value.</p>
+ */
+public final class PropertyChanges {
+
+    private final Map<String, String> oldValues;
+
+    private final Map<String, String> newValues;
+
+    PropertyChanges(Map<String, String> oldValues, Map<String, String> newValues) {
+        this.oldValues = oldValues;
+        this.newValues = newValues;
+    }
+
+    /**
+     * @return The changed keys
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(oldValues.keySet());
+    }
+
+    public int size() {
+        return oldValues.size();
+    }
+
+    public boolean isEmpty() {
+        return oldValues.isEmpty();
+    }
+
+    public boolean contains(String key) {
+        return oldValues.containsKey(key);
+    }
+
+    /**
+     * @param key The key
+     * @return The value before the change, or null if the property was added
+     */
+    public String getOldValue(String key) {
+        return oldValues.get(key);
+    }
+
+    /**
+     * @param key The key
+     * @return The value after the change, or null if the property was removed
+     */
+    public String getNewValue(String key) {
+        return newValues.get(key);
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyChanges" + newValues;
+    }
+}
@@ -0,0 +1,194 @@
+package com.brambolt;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A precompiled accessor for a single property.
+ *
+ * <p>The handle resolves and parses its property once and then remembers the
+ * specification instance and modification stamp it resolved against; the
+ * stamp is one counter shared along the defaults chain. As long as neither
+ * changes, a read is a volatile field load and a stamp comparison; the key
+ * is not hashed and the defaults chain is not walked. When the defaults
+ * chain ends in plain <code>Properties</code>, which the stamp does not
+ * cover, the raw value is looked up on every read and compared instead,
+ * which costs about as much as <code>getProperty</code>.
+ * When the specification is modified, or the source supplies a different
+ * specification (because a reloadable source published a new snapshot),
+ * the next read resolves the property again, so handles stay valid across
+ * reloads.</p>
+ *
+ * <p>Every read is reported to the instrumentation of the specification,
+ * if it has one, as a lookup of the property.</p>
+ *
+ * <p>Handles are created with <code>Specification#handle</code>, or with the
+ * public constructor when the specification is supplied by something that
+ * replaces it over time.</p>
+ *
+ * @param <T> The property value type
+ */
+public class PropertyHandle<T> {
+
+    private final Supplier<? extends Specification> source;
+
+    private final String name;
+
+    private final Class<T> type;
+
+    private final ParsedValue.Kind kind;
+
+    private volatile Resolved resolved;
+
+    /**
+     * Creates a handle.
+     *
+     * <p>Supported types are <code>String</code>, <code>Boolean</code>,
+     * <code>Integer</code>, <code>Long</code>, <code>Double</code> (or
+     * the corresponding primitive classes) and <code>Duration</code>.</p>
+     *
+     * @param source Supplies the specification to resolve against
+     * @param name The property name
+     * @param type The property value type
+     * @throws IllegalArgumentException If the type is not supported
+     */
+    public PropertyHandle(Supplier<? extends Specification> source, String name, Class<T> type) {
+        this.source = source;
+        this.name = name;
+        this.type = type;
+        this.kind = getKind(type);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return True iff the property has a value
+     */
+    public boolean isPresent() {
+        return null != resolve().raw;
+    }
+
+    /**
+     * @return The property value, or null if the property is not present
+     */
+    public T get() {
+        return resolve().value;
+    }
+
+    /**
+     * @param defaultValue The value to return if the property is not present
+     * @return The property value, or the default if not present
+     */
+    public T get(T defaultValue) {
+        T value = resolve().value;
+        return (null != value) ? value : defaultValue;
+    }
+
+    public boolean getBoolean(boolean defaultValue) {
+        Resolved resolved = resolve(ParsedValue.Kind.BOOLEAN);
+        return (null != resolved.raw) ? 0L != resolved.bits : defaultValue;
+    }
+
+    public int getInt(int defaultValue) {
+        Resolved resolved = resolve(ParsedValue.Kind.INT);
+        return (null != resolved.raw) ? (int) resolved.bits : defaultValue;
+    }
+
+    public long getLong(long defaultValue) {
+        Resolved resolved = resolve(ParsedValue.Kind.LONG);
+        return (null != resolved.raw) ? resolved.bits : defaultValue;
+    }
+
+    public double getDouble(double defaultValue) {
+        Resolved resolved = resolve(ParsedValue.Kind.DOUBLE);
+        return (null != resolved.raw) ? Double.longBitsToDouble(resolved.bits) : defaultValue;
+    }
+
+    private Resolved resolve(ParsedValue.Kind expected) {
+        if (expected != kind)
+            throw new IllegalStateException(
+                String.format("Handle for %s has type %s", name, type.getName()));
+        return resolve();
+    }
+
+    /**
+     * Resolves the property if needed and reports the read to the
+     * instrumentation of the specification, if any, so that reads through
+     * handles are counted like any other lookup.
+     */
+    private Resolved resolve() {
+        Specification specification = source.get();
+        Resolved current = resolved;
+        if (null == current || current.specification != specification
+            || current.stamp != specification.getModificationStamp()
+            || (!current.tracked && !Objects.equals(current.raw, specification.getUninstrumentedProperty(name)))) {
+            current = new Resolved(specification);
+            resolved = current;
+        }
+        if (null != current.instrumentation)
+            current.instrumentation.lookup(name, current.hit);
+        return current;
+    }
+
+    private static ParsedValue.Kind getKind(Class<?> type) {
+        if (String.class.equals(type))
+            return ParsedValue.Kind.STRING;
+        if (Boolean.class.equals(type) || boolean.class.equals(type))
+            return ParsedValue.Kind.BOOLEAN;
+        if (Integer.class.equals(type) || int.class.equals(type))
+            return ParsedValue.Kind.INT;
+        if (Long.class.equals(type) || long.class.equals(type))
+            return ParsedValue.Kind.LONG;
+        if (Double.class.equals(type) || double.class.equals(type))
+            return ParsedValue.Kind.DOUBLE;
+        if (Duration.class.equals(type))
+            return ParsedValue.Kind.DURATION;
+        throw new IllegalArgumentException("Unsupported property type: " + type.getName());
+    }
+
+    /**
+     * The property as resolved against a particular specification and
+     * modification stamp.
+     */
+    private final class Resolved {
+
+        final Specification specification;
+
+        final long stamp;
+
+        /**
+         * Whether the stamp covers the defaults chain of the specification.
+         */
+        final boolean tracked;
+
+        final Instrumentation instrumentation;
+
+        final String raw;
+
+        final boolean hit;
+
+        final long bits;
+
+        final T value;
+
+        @SuppressWarnings("unchecked")
+        Resolved(Specification specification) {
+            this.specification = specification;
+            this.stamp = specification.getModificationStamp(); // Before the lookup, so a concurrent change is seen
+            this.tracked = specification.isVersionTracked();
+            this.instrumentation = specification.getLoadOptions().getInstrumentation();
+            ParsedValue parsed = specification.lookUpParsed(name, kind);
+            this.raw = parsed.raw;
+            this.hit = parsed.hit;
+            this.bits = parsed.bits;
+            this.value = (T) parsed.value;
+        }
+    }
+}
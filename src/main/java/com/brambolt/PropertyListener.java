@@ -0,0 +1,15 @@
+package com.brambolt;
+
+/**
+ * Receives the changes to subscribed properties.
+ *
+ * @see ChangeSubscriptions
+ */
+public interface PropertyListener {
+
+    /**
+     * @param changes The changes to the subscribed keys since the previous
+     *                notification, never empty
+     */
+    void propertiesChanged(PropertyChanges changes);
+}
@@ -0,0 +1,47 @@
+package com.brambolt;
+
+import java.time.Duration;
+
+/**
+ * Parses property values the way the typed accessors of
+ * <code>Specification</code> do, for code that reads the raw values itself,
+ * such as generated configuration binders.
+ */
+public final class PropertyValues {
+
+    private PropertyValues() {}
+
+    /**
+     * @param name The property name, for messages
+     * @param value The raw value, not null
+     * @return True if the value is "true", ignoring case
+     */
+    public static boolean parseBoolean(String name, String value) {
+        return 0L != parse(name, ParsedValue.Kind.BOOLEAN, value).bits;
+    }
+
+    public static int parseInt(String name, String value) {
+        return (int) parse(name, ParsedValue.Kind.INT, value).bits;
+    }
+
+    public static long parseLong(String name, String value) {
+        return parse(name, ParsedValue.Kind.LONG, value).bits;
+    }
+
+    public static double parseDouble(String name, String value) {
+        return Double.longBitsToDouble(parse(name, ParsedValue.Kind.DOUBLE, value).bits);
+    }
+
+    /**
+     * @param name The property name, for messages
+     * @param value The raw value, ISO-8601 or milliseconds, not null
+     * @return The duration
+     */
+    public static Duration parseDuration(String name, String value) {
+        return (Duration) parse(name, ParsedValue.Kind.DURATION, value).value;
+    }
+
+    private static ParsedValue parse(String name, ParsedValue.Kind kind, String value) {
+        return ParsedValue.parse(name, kind, 0L, value, true);
+    }
+}
@@ -0,0 +1,236 @@
+package com.brambolt;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A live, read-only view of the properties under a prefix.
+ *
+ * <p>The view holds no properties of its own. Keys are relative to the
+ * prefix, so in the view of <code>system.hosts</code> the property
+ * <code>system.hosts.remote.address</code> is <code>remote.address</code>.
+ * Lookups go straight to the specification, with the full key, and see
+ * every change to it; the typed accessors use the parse cache of the
+ * specification.</p>
+ *
+ * <p>Iteration and <code>#size</code> use the sorted key index of the
+ * specification: the keys under the prefix are a contiguous range of the
+ * index, found with two binary searches, so they cost a logarithmic search
+ * plus the size of the range, however many other properties there are.
+ * The index is rebuilt after the specification changes; an iteration that
+ * is already under way keeps using the index it started with. This is the
+ * same index <code>Specification#getKeys(String)</code> uses, so a view and
+ * the key listing for the same prefix always agree.</p>
+ *
+ * @see Specification#view(String)
+ */
+public class PropertyView extends AbstractMap<String, String> {
+
+    private final Specification specification;
+
+    /**
+     * The prefix including the trailing dot, or empty for all properties.
+     */
+    private final String prefix;
+
+    PropertyView(Specification specification, String prefix) {
+        this.specification = specification;
+        this.prefix = dotted(prefix);
+    }
+
+    /**
+     * @param prefix The prefix, with or without the trailing dot
+     * @return The prefix with the trailing dot, or empty for all properties
+     */
+    static String dotted(String prefix) {
+        return (prefix.isEmpty() || prefix.endsWith(".")) ? prefix : prefix + ".";
+    }
+
+    /**
+     * @return The prefix, including the trailing dot
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Provides a view of a subtree of this view.
+     *
+     * @param prefix The prefix, relative to this view
+     * @return The view
+     */
+    public PropertyView view(String prefix) {
+        return specification.view(this.prefix + prefix);
+    }
+
+    public String getProperty(String name) {
+        return specification.getProperty(prefix + name);
+    }
+
+    public String getProperty(String name, String defaultValue) {
+        return specification.getProperty(prefix + name, defaultValue);
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        return specification.getBoolean(prefix + name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return specification.getInt(prefix + name, defaultValue);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        return specification.getLong(prefix + name, defaultValue);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        return specification.getDouble(prefix + name, defaultValue);
+    }
+
+    public Duration getDuration(String name, Duration defaultValue) {
+        return specification.getDuration(prefix + name, defaultValue);
+    }
+
+    @Override
+    public String get(Object name) {
+        return (name instanceof String) ? getProperty((String) name) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return null != get(name);
+    }
+
+    @Override
+    public int size() {
+        String[] keys = specification.getSortedKeys();
+        return end(keys, prefix) - start(keys, prefix);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return 0 == size();
+    }
+
+    /**
+     * Provides the relative keys straight from the sorted key index, without
+     * looking up their values.
+     *
+     * @return The keys under the prefix, relative to it, in sorted order
+     */
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                EntryIterator entries = new EntryIterator(specification.getSortedKeys());
+                return new Iterator<String>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return entries.nextKey().substring(prefix.length());
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object name) {
+                return containsKey(name);
+            }
+
+            @Override
+            public int size() {
+                return PropertyView.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator(specification.getSortedKeys());
+            }
+
+            @Override
+            public int size() {
+                return PropertyView.this.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates a range of the sorted key index.
+     */
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+
+        private final String[] keys;
+
+        private final int end;
+
+        private int next;
+
+        EntryIterator(String[] keys) {
+            this.keys = keys;
+            this.next = start(keys, prefix);
+            this.end = end(keys, prefix);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            String key = nextKey();
+            return new SimpleImmutableEntry<>(
+                key.substring(prefix.length()), specification.getProperty(key));
+        }
+
+        /**
+         * @return The next full key
+         */
+        String nextKey() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return keys[next++];
+        }
+    }
+
+    /**
+     * Finds the first key that starts with the prefix.
+     */
+    static int start(String[] keys, String prefix) {
+        return lowerBound(keys, prefix);
+    }
+
+    /**
+     * Finds the first key after the keys that start with the prefix. These
+     * are all below the prefix with the trailing dot replaced by the next
+     * character, '/'.
+     */
+    static int end(String[] keys, String prefix) {
+        if (prefix.isEmpty())
+            return keys.length;
+        return lowerBound(keys, prefix.substring(0, prefix.length() - 1) + '/');
+    }
+
+    private static int lowerBound(String[] keys, String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return (0 <= index) ? index : -index - 1;
+    }
+}
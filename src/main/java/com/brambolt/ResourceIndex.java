@@ -0,0 +1,222 @@
+package com.brambolt;
+
+import com.brambolt.util.Resources;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Knows which properties resources exist on the class path, so that
+ * optional layers that don't exist can be skipped without searching the
+ * class path and without exceptions.
+ *
+ * <p>There are two kinds of index. A probing index looks each resource
+ * path up once and remembers the answer; it is shared by all
+ * specifications that use the same class loader. A manifest index reads
+ * the resource paths from <code>META-INF/wrench/resources.index</code>
+ * manifests written at build time, with <code>#writeManifest</code>, and
+ * never searches the class path for properties; every jar that holds
+ * properties resources must then carry a manifest.</p>
+ *
+ * <p>Indexes are used when the load options name one; see
+ * <code>LoadOptions#withResourceIndex</code>.</p>
+ */
+public abstract class ResourceIndex {
+
+    /**
+     * The class path location of the manifests.
+     */
+    public static final String MANIFEST_RESOURCE_NAME = "META-INF/wrench/resources.index";
+
+    private static final Map<ClassLoader, ResourceIndex> PROBING = new WeakHashMap<>();
+
+    private static final Map<ClassLoader, ResourceIndex> PROBING_STREAMS = new WeakHashMap<>();
+
+    /**
+     * Provides the probing index for the context class loader. Resources are
+     * probed by opening them the same way a specification loads them, with
+     * <code>Resources#stream</code> and the class loader as context class
+     * loader, so the index agrees with loading.
+     *
+     * @return The probing index shared by callers with the same context class loader
+     */
+    public static ResourceIndex probing() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        synchronized (PROBING_STREAMS) {
+            return PROBING_STREAMS.computeIfAbsent(classLoader, loader -> new Probing(loader, true));
+        }
+    }
+
+    /**
+     * Provides the probing index for a class loader, which looks resources
+     * up with the class loader itself.
+     *
+     * @param classLoader The class loader
+     * @return The shared probing index
+     */
+    public static ResourceIndex probing(ClassLoader classLoader) {
+        synchronized (PROBING) {
+            return PROBING.computeIfAbsent(classLoader, loader -> new Probing(loader, false));
+        }
+    }
+
+    /**
+     * Reads the manifests visible to a class loader into an index.
+     *
+     * @param classLoader The class loader
+     * @return The manifest index
+     * @throws IllegalStateException If there are no manifests or one can't be read
+     */
+    public static ResourceIndex fromManifests(ClassLoader classLoader) {
+        Set<String> paths = new HashSet<>();
+        int manifests = 0;
+        try {
+            Enumeration<URL> urls = classLoader.getResources(MANIFEST_RESOURCE_NAME);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (InputStream inputStream = url.openStream()) {
+                    readManifest(inputStream, paths);
+                }
+                ++manifests;
+            }
+        } catch (IOException x) {
+            throw new IllegalStateException("Unable to read resource manifests", x);
+        }
+        if (0 == manifests)
+            throw new IllegalStateException("No resource manifests found: " + MANIFEST_RESOURCE_NAME);
+        return new Manifest(paths);
+    }
+
+    private static void readManifest(InputStream inputStream, Set<String> paths) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while (null != (line = reader.readLine())) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#"))
+                paths.add(line);
+        }
+    }
+
+    /**
+     * Writes the manifest for a resources directory, listing every
+     * properties file under it by resource path, for example from a Gradle
+     * task that the <code>jar</code> task depends on.
+     *
+     * @param resourcesDir The resources root directory
+     * @param manifestFile The manifest file to write
+     * @throws IllegalStateException If the directory can't be read or the manifest can't be written
+     */
+    public static void writeManifest(File resourcesDir, File manifestFile) {
+        Path root = resourcesDir.toPath();
+        List<String> paths = new ArrayList<>();
+        if (resourcesDir.isDirectory())
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".properties"))
+                    .filter(Files::isRegularFile)
+                    .forEach(file -> paths.add(root.relativize(file).toString().replace(File.separatorChar, '/')));
+            } catch (IOException x) {
+                throw new IllegalStateException("Unable to list resources: " + resourcesDir.getAbsolutePath(), x);
+            }
+        Collections.sort(paths);
+        File dir = manifestFile.getAbsoluteFile().getParentFile();
+        if (null != dir && !dir.isDirectory() && !dir.mkdirs())
+            throw new IllegalStateException("Unable to create directory: " + dir.getAbsolutePath());
+        try (Writer writer = Files.newBufferedWriter(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            for (String path: paths)
+                writer.write(path + "\n");
+        } catch (IOException x) {
+            throw new IllegalStateException("Unable to write resource manifest: " + manifestFile.getAbsolutePath(), x);
+        }
+    }
+
+    /**
+     * @param resourcePath The resource path
+     * @return Whether the resource exists
+     */
+    public abstract boolean exists(String resourcePath);
+
+    private static final class Probing extends ResourceIndex {
+
+        /**
+         * Weakly referenced, so the shared index does not keep the class
+         * loader alive.
+         */
+        private final WeakReference<ClassLoader> classLoader;
+
+        /**
+         * Probes by opening the resource stream when true, and by looking
+         * the resource up with the class loader otherwise.
+         */
+        private final boolean streaming;
+
+        private final Map<String, Boolean> known = new ConcurrentHashMap<>();
+
+        Probing(ClassLoader classLoader, boolean streaming) {
+            this.classLoader = new WeakReference<>(classLoader);
+            this.streaming = streaming;
+        }
+
+        @Override
+        public boolean exists(String resourcePath) {
+            return known.computeIfAbsent(resourcePath, this::probe);
+        }
+
+        private boolean probe(String resourcePath) {
+            ClassLoader loader = classLoader.get();
+            if (!streaming)
+                return null != loader && null != loader.getResource(resourcePath);
+            Thread thread = Thread.currentThread();
+            ClassLoader context = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                InputStream inputStream = Resources.stream(resourcePath);
+                if (null == inputStream)
+                    return false;
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                    // The resource exists all the same
+                }
+                return true;
+            } catch (NoSuchElementException x) {
+                return false;
+            } finally {
+                thread.setContextClassLoader(context);
+            }
+        }
+    }
+
+    private static final class Manifest extends ResourceIndex {
+
+        private final Set<String> paths;
+
+        Manifest(Set<String> paths) {
+            this.paths = paths;
+        }
+
+        @Override
+        public boolean exists(String resourcePath) {
+            return paths.contains(resourcePath);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.brambolt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The changed and removed keys between two snapshots.
+ *
+ * <p>A delta names the snapshot it is based on and the snapshot it
+ * produces by hash, so it can only be applied to its base and the result
+ * can be checked. A delta based on <code>SpecificationSnapshot#EMPTY</code>
+ * carries the full snapshot.</p>
+ *
+ * <p>Deltas are stored as <code>BinarySnapshot</code> tables: the
+ * <code>delta</code> table holds the base sequence and hash and the
+ * sequence and hash, the <code>changed</code> table holds the added and
+ * modified properties and the <code>removed</code> table holds the removed
+ * keys, with empty values. Files are written and read with
+ * <code>BinarySnapshot#writeTables</code> and
+ * <code>BinarySnapshot#readTables</code>; on a stream, the encoded tables
+ * are framed by their byte length as an int.</p>
+ */
+public final class SnapshotDelta {
+
+    /**
+     * The largest frame <code>#decode</code> accepts, in bytes.
+     */
+    public static final int MAX_FRAME_LENGTH = 64 << 20;
+
+    static final String DELTA = "delta";
+
+    static final String CHANGED = "changed";
+
+    static final String REMOVED = "removed";
+
+    static final String BASE_SEQUENCE = "baseSequence";
+
+    static final String BASE_HASH = "baseHash";
+
+    static final String SEQUENCE = "sequence";
+
+    static final String HASH = "hash";
+
+    /**
+     * Reads a delta from snapshot tables.
+     *
+     * @param tables The tables, as read by <code>BinarySnapshot</code>
+     * @param source Describes the input, for messages
+     * @return The delta
+     * @throws IllegalStateException If the tables are not a valid delta
+     */
+    public static SnapshotDelta fromTables(Map<String, Map<String, String>> tables, String source) {
+        Map<String, String> attributes = tables.get(DELTA);
+        if (null == attributes)
+            throw new IllegalStateException("Not a snapshot delta: " + source);
+        Map<String, String> changed = new TreeMap<>(tables.getOrDefault(CHANGED, Collections.emptyMap()));
+        String[] removedKeys = new TreeMap<>(tables.getOrDefault(REMOVED, Collections.emptyMap()))
+            .keySet().toArray(new String[0]);
+        return new SnapshotDelta(
+            getSequence(attributes, BASE_SEQUENCE, source), getAttribute(attributes, BASE_HASH, source),
+            getSequence(attributes, SEQUENCE, source), getAttribute(attributes, HASH, source),
+            changed.keySet().toArray(new String[0]), changed.values().toArray(new String[0]), removedKeys);
+    }
+
+    private static String getAttribute(Map<String, String> attributes, String name, String source) {
+        String value = attributes.get(name);
+        if (null == value)
+            throw new IllegalStateException(String.format("Corrupt snapshot delta, no %s: %s", name, source));
+        return value;
+    }
+
+    private static long getSequence(Map<String, String> attributes, String name, String source) {
+        String value = getAttribute(attributes, name, source);
+        try {
+            long sequence = Long.parseLong(value);
+            if (0 <= sequence)
+                return sequence;
+        } catch (NumberFormatException x) {
+            // Reported below
+        }
+        throw new IllegalStateException(String.format("Corrupt snapshot delta, bad %s %s: %s", name, value, source));
+    }
+
+    /**
+     * Reads a delta framed by <code>#encode</code>.
+     *
+     * @param in The input
+     * @param source Describes the input, for messages
+     * @return The delta
+     * @throws IOException If the input can't be read
+     * @throws IllegalStateException If the frame length is out of range or
+     *                               the frame is not a valid delta
+     */
+    public static SnapshotDelta decode(DataInput in, String source) throws IOException {
+        int length = in.readInt();
+        if (0 > length || MAX_FRAME_LENGTH < length)
+            throw new IllegalStateException(
+                String.format("Corrupt snapshot delta, bad frame length %d: %s", length, source));
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return fromTables(BinarySnapshot.decode(ByteBuffer.wrap(bytes), source), source);
+    }
+
+    private final long baseSequence;
+
+    private final String baseHash;
+
+    private final long sequence;
+
+    private final String hash;
+
+    private final String[] changedKeys;
+
+    private final String[] changedValues;
+
+    private final String[] removedKeys;
+
+    SnapshotDelta(long baseSequence, String baseHash, long sequence, String hash,
+                  String[] changedKeys, String[] changedValues, String[] removedKeys) {
+        this.baseSequence = baseSequence;
+        this.baseHash = baseHash;
+        this.sequence = sequence;
+        this.hash = hash;
+        this.changedKeys = changedKeys;
+        this.changedValues = changedValues;
+        this.removedKeys = removedKeys;
+    }
+
+    public long getBaseSequence() {
+        return baseSequence;
+    }
+
+    /**
+     * @return The hash of the snapshot the delta applies to
+     */
+    public String getBaseHash() {
+        return baseHash;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The hash of the snapshot the delta produces
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return Whether the delta carries the full snapshot
+     */
+    public boolean isFull() {
+        return SpecificationSnapshot.EMPTY.getHash().equals(baseHash);
+    }
+
+    public boolean isEmpty() {
+        return 0 == changedKeys.length && 0 == removedKeys.length;
+    }
+
+    /**
+     * @return The added and modified keys
+     */
+    public List<String> getChangedKeys() {
+        return Collections.unmodifiableList(Arrays.asList(changedKeys));
+    }
+
+    public List<String> getRemovedKeys() {
+        return Collections.unmodifiableList(Arrays.asList(removedKeys));
+    }
+
+    /**
+     * Applies the changes to a map of values.
+     *
+     * @param values The values of the base snapshot, modified in place
+     */
+    void applyTo(Map<String, String> values) {
+        for (String key: removedKeys)
+            values.remove(key);
+        for (int i = 0; i < changedKeys.length; ++i)
+            values.put(changedKeys[i], changedValues[i]);
+    }
+
+    /**
+     * @return The tables that store the delta, in the order to write them
+     */
+    public Map<String, Map<String, String>> toTables() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put(BASE_SEQUENCE, Long.toString(baseSequence));
+        attributes.put(BASE_HASH, baseHash);
+        attributes.put(SEQUENCE, Long.toString(sequence));
+        attributes.put(HASH, hash);
+        Map<String, String> changed = new LinkedHashMap<>(2 * changedKeys.length);
+        for (int i = 0; i < changedKeys.length; ++i)
+            changed.put(changedKeys[i], changedValues[i]);
+        Map<String, String> removed = new LinkedHashMap<>(2 * removedKeys.length);
+        for (String key: removedKeys)
+            removed.put(key, "");
+        Map<String, Map<String, String>> tables = new LinkedHashMap<>();
+        tables.put(DELTA, attributes);
+        tables.put(CHANGED, changed);
+        tables.put(REMOVED, removed);
+        return tables;
+    }
+
+    /**
+     * Writes the delta tables as one frame: the byte length as an int,
+     * followed by the tables in the <code>BinarySnapshot</code> layout.
+     *
+     * @param out The output
+     * @throws IOException If the output can't be written
+     * @throws IllegalStateException If the frame is longer than <code>#MAX_FRAME_LENGTH</code>
+     */
+    public void encode(DataOutput out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinarySnapshot.encode(toTables(), new DataOutputStream(bytes));
+        if (MAX_FRAME_LENGTH < bytes.size())
+            throw new IllegalStateException(
+                String.format("Snapshot delta of %d bytes exceeds the frame limit: %s", bytes.size(), this));
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotDelta{" + baseSequence + " -> " + sequence
+            + ", changed=" + changedKeys.length + ", removed=" + removedKeys.length + "}";
+    }
+}
@@ -0,0 +1,270 @@
+package com.brambolt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Publishes numbered snapshots of resolved properties to subscribers as
+ * deltas, so that only the changed keys are sent.
+ *
+ * <p>The publisher remembers its recent snapshots by hash. A subscriber
+ * that names one of them receives the delta from it to the current
+ * snapshot; a subscriber that names an unknown snapshot, or none,
+ * receives the full current snapshot.</p>
+ *
+ * <p>There are two transports, both meant for nodes that can reach each
+ * other on one host or a shared file system:</p>
+ * <ul>
+ *     <li>With a drop directory, each publish writes the delta from the
+ *     previous snapshot to <code>&lt;sequence&gt;.delta</code> and the
+ *     full snapshot to <code>latest.delta</code>, with
+ *     <code>BinarySnapshot#writeTables</code>. Only the most recent deltas
+ *     are kept. Subscribers poll the directory with
+ *     <code>SnapshotSubscriber#poll</code>. Since the sequence starts over
+ *     with each publisher, a new publisher removes the deltas left in the
+ *     directory by the previous one.</li>
+ *     <li>With <code>#serve</code>, the publisher answers requests on a
+ *     loopback socket: the subscriber sends the hash of its snapshot and
+ *     receives the delta as a frame; see <code>SnapshotDelta#encode</code>
+ *     and <code>SnapshotSubscriber#sync</code>.</li>
+ * </ul>
+ */
+public class SnapshotPublisher {
+
+    /**
+     * The name of the full snapshot in the drop directory.
+     */
+    public static final String LATEST_FILE_NAME = "latest.delta";
+
+    static final String DELTA_FILE_SUFFIX = ".delta";
+
+    private static final int HISTORY_SIZE = 16;
+
+    /**
+     * How long the server waits for a subscriber to send its request.
+     */
+    public static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The number of requests the server answers at once.
+     */
+    private static final int SERVER_THREADS = 4;
+
+    private final File dropDir;
+
+    /**
+     * The recent snapshots by hash, oldest first; guarded by this.
+     */
+    private final Map<String, SpecificationSnapshot> history =
+        new LinkedHashMap<String, SpecificationSnapshot>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SpecificationSnapshot> eldest) {
+                return HISTORY_SIZE < size();
+            }
+        };
+
+    private volatile SpecificationSnapshot current = SpecificationSnapshot.EMPTY;
+
+    /**
+     * Creates a publisher for socket subscribers only.
+     */
+    public SnapshotPublisher() {
+        this(null);
+    }
+
+    /**
+     * Creates a publisher that also drops deltas into a directory.
+     *
+     * @param dropDir The drop directory, or null
+     */
+    public SnapshotPublisher(File dropDir) {
+        this.dropDir = dropDir;
+        history.put(current.getHash(), current);
+        if (null != dropDir)
+            removeDeltas(0);
+    }
+
+    /**
+     * @return The current snapshot
+     */
+    public SpecificationSnapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Publishes the resolved properties as the next snapshot. If the
+     * content has not changed, the current snapshot remains and nothing is
+     * published.
+     *
+     * @param properties The properties to publish
+     * @return The current snapshot
+     * @throws IllegalStateException If the deltas can't be dropped
+     */
+    public synchronized SpecificationSnapshot publish(Properties properties) {
+        SpecificationSnapshot previous = current;
+        SpecificationSnapshot next = SpecificationSnapshot.of(properties, previous.getSequence() + 1);
+        if (next.getHash().equals(previous.getHash()))
+            return previous;
+        history.put(next.getHash(), next);
+        current = next;
+        if (null != dropDir)
+            drop(next.diff(previous), next.diff(SpecificationSnapshot.EMPTY));
+        return next;
+    }
+
+    /**
+     * Provides the delta from a snapshot to the current snapshot.
+     *
+     * @param baseHash The hash of the subscriber snapshot, or null
+     * @return The delta, which is full if the base is not known
+     */
+    public synchronized SnapshotDelta getDelta(String baseHash) {
+        SpecificationSnapshot base = (null != baseHash) ? history.get(baseHash) : null;
+        return current.diff(null != base ? base : SpecificationSnapshot.EMPTY);
+    }
+
+    private void drop(SnapshotDelta delta, SnapshotDelta full) {
+        if (!dropDir.isDirectory() && !dropDir.mkdirs())
+            throw new IllegalStateException("Unable to create directory: " + dropDir.getAbsolutePath());
+        BinarySnapshot.writeTables(delta.toTables(), new File(dropDir, getDeltaFileName(delta.getSequence())));
+        BinarySnapshot.writeTables(full.toTables(), new File(dropDir, LATEST_FILE_NAME));
+        removeDeltas(HISTORY_SIZE);
+    }
+
+    /**
+     * Removes the oldest deltas from the drop directory.
+     *
+     * @param keep The number of deltas to keep
+     */
+    private void removeDeltas(int keep) {
+        File[] deltas = dropDir.listFiles((dir, name) -> isDeltaFileName(name));
+        if (null == deltas || keep >= deltas.length)
+            return;
+        Arrays.sort(deltas);
+        for (int i = 0; i < deltas.length - keep; ++i)
+            //noinspection ResultOfMethodCallIgnored
+            deltas[i].delete();
+    }
+
+    /**
+     * Zero-padded, so that the file names sort in sequence order.
+     */
+    static String getDeltaFileName(long sequence) {
+        return String.format("%020d%s", sequence, DELTA_FILE_SUFFIX);
+    }
+
+    static boolean isDeltaFileName(String name) {
+        return 20 + DELTA_FILE_SUFFIX.length() == name.length() && name.endsWith(DELTA_FILE_SUFFIX)
+            && Character.isDigit(name.charAt(0));
+    }
+
+    /**
+     * Answers delta requests on a loopback port until the server is closed,
+     * waiting <code>#DEFAULT_TIMEOUT_MILLIS</code> for each request.
+     *
+     * @param port The port, or zero for any free port
+     * @return The running server
+     * @throws IllegalStateException If the port can't be opened
+     */
+    public Server serve(int port) {
+        return serve(port, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Answers delta requests on a loopback port until the server is closed.
+     *
+     * @param port The port, or zero for any free port
+     * @param timeoutMillis How long to wait for a subscriber to send its
+     *                      request before dropping the connection
+     * @return The running server
+     * @throws IllegalStateException If the port can't be opened
+     */
+    public Server serve(int port, int timeoutMillis) {
+        try {
+            return new Server(new ServerSocket(port, 50, InetAddress.getLoopbackAddress()), timeoutMillis);
+        } catch (IOException x) {
+            throw new IllegalStateException("Unable to listen on port " + port, x);
+        }
+    }
+
+    /**
+     * Answers delta requests, one per connection. Connections are accepted
+     * on a daemon thread and answered on a small pool of daemon threads, so
+     * a subscriber that connects and stalls holds up neither the others
+     * nor, past the timeout, a thread.
+     */
+    public final class Server implements Closeable {
+
+        private final ServerSocket serverSocket;
+
+        private final int timeoutMillis;
+
+        private final ExecutorService answering;
+
+        private Server(ServerSocket serverSocket, int timeoutMillis) {
+            this.serverSocket = serverSocket;
+            this.timeoutMillis = timeoutMillis;
+            String name = "snapshot-publisher-" + serverSocket.getLocalPort();
+            this.answering = Executors.newFixedThreadPool(SERVER_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, name + "-answer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            Thread thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void run() {
+            while (!serverSocket.isClosed())
+                try {
+                    Socket socket = serverSocket.accept();
+                    try {
+                        answering.execute(() -> answer(socket));
+                    } catch (RejectedExecutionException x) {
+                        socket.close(); // Closing
+                    }
+                } catch (IOException x) {
+                    // The server socket was closed, or the connection failed before it was accepted
+                }
+        }
+
+        private void answer(Socket socket) {
+            try (Socket closing = socket) {
+                closing.setSoTimeout(timeoutMillis);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(closing.getInputStream()));
+                String baseHash = in.readUTF();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(closing.getOutputStream()));
+                getDelta(baseHash).encode(out);
+                out.flush();
+            } catch (IOException | RuntimeException x) {
+                // The subscriber went away, timed out or sent garbage; it will ask again
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            answering.shutdownNow();
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.brambolt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Receives the snapshots of a <code>SnapshotPublisher</code> as deltas and
+ * applies them atomically.
+ *
+ * <p>The current properties are a frozen specification behind an atomic
+ * reference. A delta is applied to a copy of the current snapshot, the
+ * result is checked against the hash named by the delta, and only then is
+ * the new frozen specification swapped in; readers see either the old or
+ * the new properties, never a mix. Listeners subscribed here are notified
+ * of the changed keys after each swap.</p>
+ *
+ * <p>A subscriber can also apply each snapshot to a specification the
+ * application already reads from. The changes are applied to it as one
+ * modification under its lock, in the order of the swaps; see
+ * <code>#SnapshotSubscriber(LoadOptions, Specification)</code>.</p>
+ */
+public class SnapshotSubscriber {
+
+    /**
+     * A snapshot and the specification built from it.
+     */
+    private static final class State {
+
+        final SpecificationSnapshot snapshot;
+
+        final FrozenSpecification specification;
+
+        State(SpecificationSnapshot snapshot, FrozenSpecification specification) {
+            this.snapshot = snapshot;
+            this.specification = specification;
+        }
+    }
+
+    /**
+     * How long <code>#sync</code> waits to connect and for the delta.
+     */
+    public static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private final LoadOptions loadOptions;
+
+    private final Specification target;
+
+    private final AtomicReference<State> state;
+
+    private final ChangeSubscriptions subscriptions = new ChangeSubscriptions();
+
+    public SnapshotSubscriber() {
+        this(null);
+    }
+
+    /**
+     * @param loadOptions The options for the frozen specifications, or null
+     */
+    public SnapshotSubscriber(LoadOptions loadOptions) {
+        this(loadOptions, null);
+    }
+
+    /**
+     * @param loadOptions The options for the frozen specifications, or null
+     * @param target The specification to apply the snapshots to as well, or null
+     * @throws IllegalArgumentException If the target is sealed
+     */
+    public SnapshotSubscriber(LoadOptions loadOptions, Specification target) {
+        if (null != target && target.isSealed())
+            throw new IllegalArgumentException("Sealed specifications can not receive snapshots");
+        this.loadOptions = loadOptions;
+        this.target = target;
+        this.state = new AtomicReference<>(new State(SpecificationSnapshot.EMPTY,
+            FrozenSpecification.of(SpecificationSnapshot.EMPTY.getValues(), loadOptions)));
+    }
+
+    /**
+     * @return The current properties
+     */
+    public FrozenSpecification get() {
+        return state.get().specification;
+    }
+
+    public SpecificationSnapshot getSnapshot() {
+        return state.get().snapshot;
+    }
+
+    /**
+     * Applies a delta if it is based on the current snapshot or carries a
+     * full snapshot.
+     *
+     * @param delta The delta
+     * @return False if the delta is based on another snapshot and was not applied
+     * @throws IllegalStateException If the delta does not produce the snapshot it names
+     */
+    public boolean apply(SnapshotDelta delta) {
+        while (true) {
+            State current = state.get();
+            SpecificationSnapshot base;
+            if (current.snapshot.getHash().equals(delta.getBaseHash()))
+                base = current.snapshot;
+            else if (delta.isFull())
+                base = SpecificationSnapshot.EMPTY;
+            else
+                return false;
+            if (current.snapshot.getHash().equals(delta.getHash()))
+                return true; // Already there
+            SpecificationSnapshot next = base.apply(delta);
+            State updated = new State(next, FrozenSpecification.of(next.getValues(), loadOptions));
+            if (swap(current, updated, delta, base == current.snapshot)) {
+                notify(current.snapshot, next, delta, base == current.snapshot);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Swaps the state and applies the changes to the target, if any, under
+     * the lock of the target, so that the target receives the snapshots in
+     * the order they are swapped in.
+     */
+    private boolean swap(State current, State updated, SnapshotDelta delta, boolean incremental) {
+        if (null == target)
+            return state.compareAndSet(current, updated);
+        synchronized (target) {
+            if (!state.compareAndSet(current, updated))
+                return false;
+            SpecificationSnapshot next = updated.snapshot;
+            List<String> removedKeys = new ArrayList<>(delta.getRemovedKeys());
+            if (!incremental) // The full snapshot replaced everything:
+                for (String key: current.snapshot.getValues().keySet())
+                    if (null == next.get(key))
+                        removedKeys.add(key);
+            Map<String, String> changed = new HashMap<>();
+            for (String key: delta.getChangedKeys())
+                changed.put(key, next.get(key));
+            target.update(changed, removedKeys);
+            return true;
+        }
+    }
+
+    private void notify(SpecificationSnapshot previous, SpecificationSnapshot next, SnapshotDelta delta,
+                        boolean incremental) {
+        if (0 == subscriptions.size())
+            return;
+        Set<String> changedKeys = new LinkedHashSet<>(delta.getChangedKeys());
+        changedKeys.addAll(delta.getRemovedKeys());
+        if (!incremental) // The full snapshot replaced everything:
+            changedKeys.addAll(previous.getValues().keySet());
+        Map<String, String> oldValues = new HashMap<>();
+        Map<String, String> newValues = new HashMap<>();
+        changedKeys.removeIf(key -> {
+            String oldValue = previous.get(key);
+            String newValue = next.get(key);
+            oldValues.put(key, oldValue);
+            newValues.put(key, newValue);
+            return null == oldValue ? null == newValue : oldValue.equals(newValue);
+        });
+        if (!changedKeys.isEmpty())
+            subscriptions.publish(oldValues, newValues, changedKeys);
+    }
+
+    /**
+     * Applies the deltas dropped since the current snapshot, in order. If
+     * a delta is missing or is not based on the current snapshot, the full
+     * snapshot is applied instead. That includes a publisher that was
+     * restarted and numbers its snapshots from the start again: its newest
+     * delta then has no successor here but names another snapshot.
+     *
+     * @param dropDir The drop directory of the publisher
+     * @return Whether the current snapshot changed
+     * @throws IllegalStateException If a delta can't be read
+     */
+    public boolean poll(File dropDir) {
+        SpecificationSnapshot snapshot = getSnapshot();
+        String own = SnapshotPublisher.getDeltaFileName(snapshot.getSequence());
+        File[] files = dropDir.listFiles((dir, name) -> SnapshotPublisher.isDeltaFileName(name));
+        boolean complete = null != files && 0 < files.length;
+        if (complete) {
+            Arrays.sort(files);
+            int next = 0;
+            while (next < files.length && files[next].getName().compareTo(own) <= 0)
+                ++next;
+            if (next == files.length) { // Nothing newer, but check that the newest is this snapshot:
+                SnapshotDelta newest = read(files[files.length - 1]);
+                complete = null != newest && snapshot.getHash().equals(newest.getHash());
+            }
+            for (int i = next; complete && i < files.length; ++i) {
+                SnapshotDelta delta = read(files[i]);
+                complete = null != delta && apply(delta);
+            }
+        }
+        if (!complete) {
+            SnapshotDelta full = read(new File(dropDir, SnapshotPublisher.LATEST_FILE_NAME));
+            if (null != full)
+                apply(full);
+        }
+        return !snapshot.getHash().equals(getSnapshot().getHash());
+    }
+
+    /**
+     * @return The delta, or null if the file was removed
+     */
+    private static SnapshotDelta read(File file) {
+        try {
+            return SnapshotDelta.fromTables(BinarySnapshot.readTables(file), file.getAbsolutePath());
+        } catch (IllegalStateException x) {
+            if (x.getCause() instanceof NoSuchFileException)
+                return null;
+            throw x;
+        }
+    }
+
+    /**
+     * Requests the delta from the current snapshot from a publisher
+     * server and applies it, waiting <code>#DEFAULT_TIMEOUT_MILLIS</code>
+     * to connect and for the delta.
+     *
+     * @param address The server address
+     * @return Whether the current snapshot changed
+     * @throws IllegalStateException If the server can't be reached or does not answer in time
+     */
+    public boolean sync(InetSocketAddress address) {
+        return sync(address, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Requests the delta from the current snapshot from a publisher
+     * server and applies it.
+     *
+     * @param address The server address
+     * @param timeoutMillis How long to wait to connect, and then for each read
+     * @return Whether the current snapshot changed
+     * @throws IllegalStateException If the server can't be reached, does not
+     *                               answer in time or sends an invalid frame
+     */
+    public boolean sync(InetSocketAddress address, int timeoutMillis) {
+        String before = getSnapshot().getHash();
+        SnapshotDelta delta;
+        try (Socket socket = new Socket()) {
+            socket.connect(address, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(before);
+            out.flush();
+            delta = SnapshotDelta.decode(
+                new DataInputStream(new BufferedInputStream(socket.getInputStream())), address.toString());
+        } catch (IOException x) {
+            throw new IllegalStateException("Unable to sync snapshot from " + address, x);
+        }
+        apply(delta);
+        return !before.equals(getSnapshot().getHash());
+    }
+
+    /**
+     * Subscribes to the changes of the keys under a prefix.
+     *
+     * @param prefix The prefix, without the trailing dot; empty for all keys
+     * @param listener The listener
+     * @return The subscription
+     * @see ChangeSubscriptions
+     */
+    public ChangeSubscriptions.Subscription subscribe(String prefix, PropertyListener listener) {
+        return subscriptions.subscribe(prefix, listener);
+    }
+
+    public ChangeSubscriptions.Subscription subscribe(String prefix, PropertyListener listener, Executor executor) {
+        return subscriptions.subscribe(prefix, listener, executor);
+    }
+
+    public ChangeSubscriptions.Subscription subscribeKey(String key, PropertyListener listener) {
+        return subscriptions.subscribeKey(key, listener);
+    }
+}
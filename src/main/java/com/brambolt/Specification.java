@@ -4,18 +4,149 @@ import com.brambolt.util.Maps;
 import com.brambolt.util.Resources;
 
 import java.io.*;
+import java.time.Duration;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public class Specification extends Properties {
 
-    public Specification() {}
+    /**
+     * Counts the modifications made to this specification (but not to its
+     * defaults); see <code>#getVersion</code>.
+     */
+    private final transient AtomicLong modifications = new AtomicLong();
+
+    /**
+     * Counts the modifications made to this specification and to every
+     * specification connected to it through defaults; the counter is
+     * shared with the defaults, if they are a specification. See
+     * <code>#getModificationStamp</code>.
+     */
+    private final transient AtomicLong stamp;
+
+    /**
+     * Whether the stamp covers the whole defaults chain; see
+     * <code>#isVersionTracked</code>.
+     */
+    private final transient boolean versionTracked;
+
+    /**
+     * Caches the values parsed by the typed accessors, per property name.
+     */
+    private final transient Map<String, ParsedValue> parsedValues = new ConcurrentHashMap<>();
+
+    private final LoadOptions loadOptions;
+
+    /**
+     * The loaded layers, in load order, if the load options record them.
+     */
+    private final List<Layer> layers = new ArrayList<>();
+
+    /**
+     * The origin of each loaded property, if the load options track
+     * provenance, and null otherwise.
+     */
+    private final Map<String, Origin> origins;
+
+    /**
+     * The canonical key strings, shared by all loaded layers.
+     */
+    private final transient KeyTable keyTable;
+
+    /**
+     * Rejects modifications when true; see <code>#seal</code>.
+     */
+    private volatile boolean sealed;
+
+    /**
+     * The sorted keys and the version they were collected at, or null.
+     *
+     * <p>The array holds the key strings of the table, so it costs a
+     * reference per key. Keys are not also stored as interned path
+     * segments: the table has to hold every key as one string, so a
+     * segment trie could only be a second index next to it, and one costs
+     * about nine times as much as this array for the same keys.</p>
+     */
+    private transient volatile Indexed<String[]> sortedKeys;
+
+    /**
+     * The compiled interpolation and the version it was built at, or null.
+     */
+    private transient volatile Indexed<Interpolation> interpolation;
+
+    /**
+     * The version range index and the version it was built at, or null.
+     */
+    private transient volatile Indexed<VersionIndex> versionIndex;
+
+    public Specification() {
+        this(null, null);
+    }
 
     public Specification(Properties defaults) {
+        this(defaults, null);
+    }
+
+    public Specification(Properties defaults, LoadOptions loadOptions) {
         super(defaults);
+        this.stamp = (defaults instanceof Specification) ? ((Specification) defaults).stamp : new AtomicLong();
+        this.versionTracked = null == defaults
+            || (defaults instanceof Specification && ((Specification) defaults).versionTracked);
+        this.loadOptions = null != loadOptions ? loadOptions : LoadOptions.defaults();
+        this.origins = this.loadOptions.isTrackingProvenance() ? new ConcurrentHashMap<>() : null;
+        this.keyTable = new KeyTable(this.loadOptions.getValuePool());
+    }
+
+    public LoadOptions getLoadOptions() {
+        return loadOptions;
+    }
+
+    /**
+     * @return The defaults, or null if there are none
+     */
+    public Properties getDefaults() {
+        return defaults;
+    }
+
+    /**
+     * Provides the layers this specification was loaded from, in load order.
+     *
+     * <p>Layers are only recorded when the load options ask for it; the list
+     * is empty otherwise.</p>
+     *
+     * @return The recorded layers
+     */
+    public List<Layer> getLayers() {
+        return Collections.unmodifiableList(layers);
+    }
+
+    /**
+     * Adds a layer on top of the properties loaded so far.
+     *
+     * @param layer The layer to add
+     */
+    protected void addLayer(Layer layer) {
+        layers.add(layer);
+        putAll(layer.getValues());
     }
 
     /**
@@ -42,8 +173,10 @@ public class Specification extends Properties {
         String value = getProperty(name);
         if (null == value || value.trim().isEmpty())
             return; // No list defined, nothing to load
+        List<String> resourcePaths = new ArrayList<>();
         for (String element: value.split(","))
-            loadPropertiesFromResource(String.format(resourcePathTemplate, name, element));
+            resourcePaths.add(String.format(resourcePathTemplate, name, element));
+        loadPropertiesFromResources(resourcePaths);
     }
 
     /**
@@ -66,12 +199,101 @@ public class Specification extends Properties {
             path = path.substring(0, path.lastIndexOf("/"));
         if (null == value || value.trim().isEmpty())
             return; // No list defined, nothing to load
+        List<String> resourcePaths = new ArrayList<>();
         for (String element: value.split(","))
-            loadPropertiesFromResource(String.format("%s/%s.properties", path, element));
+            resourcePaths.add(String.format("%s/%s.properties", path, element));
+        loadPropertiesFromResources(resourcePaths);
+    }
+
+    /**
+     * Loads a list of resources, later resources overriding earlier ones.
+     *
+     * <p>If the load options provide an executor then the resources are
+     * fetched and parsed concurrently, each into its own properties, and
+     * then merged in list order. Otherwise each resource is loaded in turn
+     * with <code>#loadPropertiesFromResource</code>.</p>
+     *
+     * @param resourcePaths The resource paths to load, in override order
+     */
+    protected void loadPropertiesFromResources(List<String> resourcePaths) {
+        Executor executor = getLoadOptions().getExecutor();
+        if (null == executor || 2 > resourcePaths.size()) {
+            for (String resourcePath: resourcePaths)
+                loadPropertiesFromResource(resourcePath);
+            return;
+        }
+        List<CompletableFuture<LoadedResource>> futures = new ArrayList<>();
+        for (String resourcePath: resourcePaths)
+            futures.add(CompletableFuture.supplyAsync(() -> readPropertiesFromResource(resourcePath), executor));
+        for (int i = 0; i < futures.size(); ++i)
+            try {
+                LoadedResource loaded = futures.get(i).join();
+                String resourcePath = resourcePaths.get(i);
+                if (getLoadOptions().isRecordingLayers())
+                    addLayer(new Layer(resourcePath, loaded.values, loaded.lines));
+                else
+                    putAll(loaded.values);
+                recordOrigins(resourcePath, loaded.values, loaded.lines);
+            } catch (CompletionException x) {
+                if (x.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) x.getCause();
+                throw x;
+            }
+    }
+
+    /**
+     * The properties read from a resource, with their line numbers when
+     * provenance is tracked.
+     */
+    private static class LoadedResource {
+
+        final Properties values = new Properties();
+
+        final Map<String, Integer> lines;
+
+        LoadedResource(Map<String, Integer> lines) {
+            this.lines = lines;
+        }
+    }
+
+    private LoadedResource readPropertiesFromResource(String resourcePath) {
+        LoadedResource loaded = new LoadedResource(createLines());
+        try (InputStream inputStream = openResource(resourcePath)) {
+            readProperties(resourcePath, inputStream, loaded.values, loaded.lines);
+        } catch (IOException x) {
+            throw new RuntimeException(
+                String.format("Unable to read properties at %s", resourcePath),
+                x);
+        }
+        return loaded;
     }
 
     protected void loadPropertiesFromResource(String resourcePath) {
-        loadProperties(resourcePath, Resources.stream(resourcePath));
+        loadProperties(resourcePath, openResource(resourcePath));
+    }
+
+    /**
+     * Opens a properties resource for reading.
+     *
+     * @param resourcePath The resource path
+     * @return The resource stream, or null if there is no such resource
+     */
+    protected InputStream openResource(String resourcePath) {
+        if (isMissingResource(resourcePath))
+            return null;
+        return Resources.stream(resourcePath);
+    }
+
+    /**
+     * Checks the resource index from the load options, if any.
+     *
+     * @param resourcePath The resource path
+     * @return True if the resource is known not to exist, false if it exists
+     *         or there is no index
+     */
+    protected boolean isMissingResource(String resourcePath) {
+        ResourceIndex resourceIndex = getLoadOptions().getResourceIndex();
+        return null != resourceIndex && !resourceIndex.exists(resourcePath);
     }
 
     protected void loadPropertiesFromFile(String filePath) {
@@ -79,25 +301,103 @@ public class Specification extends Properties {
     }
 
     protected void loadPropertiesFromFile(File file) {
+        if (!getLoadOptions().isRecordingLayers()) {
+            try (FileInputStream inputStream = new FileInputStream(file)) {
+                loadProperties(file.getAbsolutePath(), inputStream);
+            } catch (FileNotFoundException x) {
+                throw new IllegalStateException("Properties file not found: " + file.getAbsolutePath(), x);
+            } catch (IOException x) {
+                throw new IllegalStateException("Unable to load properties file: " + file.getAbsolutePath(), x);
+            }
+            return;
+        }
+        // Capture the file statistics first, so a concurrent change is seen on reload:
+        long lastModified = file.lastModified();
+        long length = file.length();
+        String path = file.getAbsolutePath();
+        Properties values = new Properties();
+        Map<String, Integer> lines = createLines();
         try (FileInputStream inputStream = new FileInputStream(file)) {
-            loadProperties(file.getAbsolutePath(), inputStream);
+            readProperties(path, inputStream, values, lines);
         } catch (FileNotFoundException x) {
-            throw new IllegalStateException("Properties file not found: " + file.getAbsolutePath(), x);
+            throw new IllegalStateException("Properties file not found: " + path, x);
         } catch (IOException x) {
-            throw new IllegalStateException("Unable to load properties file: " + file.getAbsolutePath(), x);
+            throw new IllegalStateException("Unable to load properties file: " + path, x);
         }
+        addLayer(new Layer(path, file, lastModified, length, values, lines));
+        recordOrigins(path, values, lines);
     }
 
     protected void loadProperties(String path, InputStream inputStream) {
-        loadProperties(path, inputStream, this);
+        Map<String, Integer> lines = createLines();
+        if (getLoadOptions().isRecordingLayers()) {
+            Properties values = new Properties();
+            readProperties(path, inputStream, values, lines);
+            addLayer(new Layer(path, values, lines));
+            recordOrigins(path, values, lines);
+        } else {
+            readProperties(path, inputStream, this, lines);
+            recordOrigins(path, this, lines);
+        }
     }
 
-    public static void loadProperties(String path, InputStream inputStream, Properties target) {
+    /**
+     * Loads properties, reporting the time and size to the instrumentation
+     * from the load options, if any.
+     *
+     * @param path The resource path or file path, for messages
+     * @param inputStream The stream to read
+     * @param target The properties to load into
+     * @param lines Receives the line number of each key, or null
+     */
+    private void readProperties(String path, InputStream inputStream, Properties target, Map<String, Integer> lines) {
+        readProperties(path, inputStream, target, lines, getLoadOptions(), keyTable);
+    }
+
+    /**
+     * Loads properties, reporting the time and size to the instrumentation
+     * from the load options, if any.
+     *
+     * @param path The resource path or file path, for messages
+     * @param inputStream The stream to read
+     * @param target The properties to load into
+     * @param lines Receives the line number of each key, or null
+     * @param loadOptions The load options
+     * @param keyTable Canonicalizes keys, or null
+     */
+    static void readProperties(String path, InputStream inputStream, Properties target, Map<String, Integer> lines,
+                               LoadOptions loadOptions, KeyTable keyTable) {
+        Instrumentation instrumentation = loadOptions.getInstrumentation();
+        if (null == instrumentation || null == inputStream) {
+            parseProperties(path, inputStream, target, lines, loadOptions, keyTable);
+            return;
+        }
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        long start = System.nanoTime();
+        parseProperties(path, countingInputStream, target, lines, loadOptions, keyTable);
+        instrumentation.layerLoaded(path, System.nanoTime() - start, countingInputStream.getCount());
+    }
+
+    /**
+     * Parses properties in a single pass over the bytes, straight into the
+     * target, with the encoding from the load options. Keys are canonicalized
+     * through the key table of the loading specification, if any, so a key
+     * that several layers define is decoded into a string only once.
+     */
+    private static void parseProperties(String path, InputStream inputStream, Properties target,
+                                        Map<String, Integer> lines, LoadOptions loadOptions, KeyTable keyTable) {
         if (null == inputStream)
             throw new NoSuchElementException(
                 String.format("Unable to load properties: %s", path));
         try {
-            target.load(inputStream);
+            ValuePool valuePool = loadOptions.getValuePool();
+            PropertiesParser.Handler handler = (null == lines)
+                ? (key, value, line) -> target.put(key, intern(valuePool, value))
+                : (key, value, line) -> {
+                    target.put(key, intern(valuePool, value));
+                    lines.put(key, line);
+                };
+            PropertiesParser.parse(inputStream, loadOptions.getCharset(), keyTable, handler);
         } catch (IOException x) {
             throw new RuntimeException(
                 String.format("Unable to read properties at %s", path),
@@ -105,10 +405,238 @@ public class Specification extends Properties {
         }
     }
 
+    private static String intern(ValuePool valuePool, String value) {
+        return (null != valuePool) ? valuePool.intern(value) : value;
+    }
+
+    /**
+     * @return A map to receive line numbers if provenance is tracked, or null
+     */
+    private Map<String, Integer> createLines() {
+        return (null != origins) ? new HashMap<>() : null;
+    }
+
+    /**
+     * Records the origin of each property just loaded from a path, on top of
+     * the origins recorded for the same keys by earlier loads.
+     */
+    private void recordOrigins(String path, Properties values, Map<String, Integer> lines) {
+        if (null == origins || null == lines)
+            return;
+        for (Map.Entry<String, Integer> entry: lines.entrySet()) {
+            String key = entry.getKey();
+            Object value = (values == this) ? super.get(key) : values.get(key);
+            origins.put(key, new Origin(path, entry.getValue(), (String) value, origins.get(key)));
+        }
+    }
+
+    /**
+     * Finds out where the value of a property came from.
+     *
+     * <p>Origins are only recorded when the load options ask for it.
+     * Properties set directly, rather than loaded, have no origin. Origins
+     * for properties that are only defined in defaults are looked up in the
+     * defaults, if the defaults are a specification.</p>
+     *
+     * @param name The property name
+     * @return The origin of the current value, or null if not known
+     */
+    public Origin getOrigin(String name) {
+        Origin origin = (null != origins) ? origins.get(name) : null;
+        if (null == origin && (defaults instanceof Specification))
+            return ((Specification) defaults).getOrigin(name);
+        return origin;
+    }
+
+    /**
+     * Records the origin of a property that was not loaded by this
+     * specification, for copies such as frozen specifications. Does nothing
+     * unless provenance is tracked.
+     *
+     * @param name The property name
+     * @param origin The origin, or null
+     */
+    void setOrigin(String name, Origin origin) {
+        if (null != origins && null != origin)
+            origins.put(name, origin);
+    }
+
+    public static void loadProperties(String path, InputStream inputStream, Properties target) {
+        loadProperties(path, inputStream, target, LoadOptions.defaults());
+    }
+
+    /**
+     * Loads properties into a target outside of any specification, with the
+     * encoding, value pool and instrumentation from the load options.
+     *
+     * @param path The resource path or file path, for messages
+     * @param inputStream The stream to read
+     * @param target The properties to load into
+     * @param loadOptions The load options
+     * @throws NoSuchElementException If the stream is null
+     */
+    public static void loadProperties(String path, InputStream inputStream, Properties target, LoadOptions loadOptions) {
+        readProperties(path, inputStream, target, null, loadOptions, null);
+    }
+
+    /**
+     * Creates an immutable, flattened copy of this specification.
+     *
+     * <p>The defaults chain is resolved once and the frozen copy serves
+     * lookups without locking, which makes it the right thing to hand to
+     * request threads once loading is complete. Later changes to this
+     * specification (or its defaults) are not reflected in the copy.</p>
+     *
+     * @return A frozen copy of this specification
+     */
+    public FrozenSpecification freeze() {
+        return new FrozenSpecification(this);
+    }
+
+    /**
+     * Creates a handle for reading a single property repeatedly; see
+     * <code>PropertyHandle</code>.
+     *
+     * @param name The property name
+     * @param type The property value type
+     * @param <T> The property value type
+     * @return A handle for the property
+     */
+    public <T> PropertyHandle<T> handle(String name, Class<T> type) {
+        return new PropertyHandle<>(() -> this, name, type);
+    }
+
     public List<String> getKeys() {
         return Maps.getKeys(this);
     }
 
+    /**
+     * Provides a live, read-only view of the properties under a prefix,
+     * with keys relative to the prefix.
+     *
+     * @param prefix The prefix, with or without the trailing dot; empty for
+     *               all properties
+     * @return The view
+     * @see PropertyView
+     */
+    public PropertyView view(String prefix) {
+        return new PropertyView(this, prefix);
+    }
+
+    /**
+     * Lists the keys under a prefix, including keys only defined in the
+     * defaults, in sorted order. Only keys that continue the prefix with a
+     * dot are included; <code>a.b</code> is under <code>a</code>, but
+     * <code>a</code> and <code>ab</code> are not.
+     *
+     * @param prefix The prefix, with or without the trailing dot
+     * @return The full keys under the prefix
+     */
+    public List<String> getKeys(String prefix) {
+        String[] keys = getSortedKeys();
+        String dotted = PropertyView.dotted(prefix);
+        return Collections.unmodifiableList(Arrays.asList(keys).subList(
+            PropertyView.start(keys, dotted), PropertyView.end(keys, dotted)));
+    }
+
+    /**
+     * Provides the keys, including keys only defined in the defaults, in
+     * sorted order. The array is collected on first use and again after
+     * this specification or its defaults change, and must not be modified.
+     *
+     * @return The sorted keys for the current version
+     */
+    String[] getSortedKeys() {
+        long version = getVersion();
+        Indexed<String[]> indexed = sortedKeys;
+        if (null == indexed || indexed.version != version) {
+            String[] keys = stringPropertyNames().toArray(new String[0]);
+            Arrays.sort(keys);
+            indexed = new Indexed<>(version, keys);
+            sortedKeys = indexed;
+        }
+        return indexed.index;
+    }
+
+    /**
+     * Provides the value of a property with its <code>${key}</code>
+     * references to other properties resolved. Values are not interpolated
+     * by <code>#getProperty</code>, since they are also used as templates.
+     *
+     * @param name The property name
+     * @return The interpolated value, or null if there is no such property
+     * @throws IllegalStateException If the references form a cycle
+     * @see Interpolation
+     */
+    public String getInterpolatedProperty(String name) {
+        return interpolation().get(name);
+    }
+
+    /**
+     * Provides the compiled interpolation of the resolved properties. It is
+     * compiled on first use and again after this specification or its
+     * defaults change; until then the memoized values are reused.
+     *
+     * @return The interpolation for the current version
+     * @throws IllegalStateException If the references form a cycle
+     */
+    public Interpolation interpolation() {
+        long version = getVersion();
+        Indexed<Interpolation> indexed = interpolation;
+        if (null == indexed || indexed.version != version) {
+            indexed = new Indexed<>(version, Interpolation.of(this));
+            interpolation = indexed;
+        }
+        return indexed.index;
+    }
+
+    /**
+     * Provides the value of a property for a version, from the most
+     * specific key qualified with a matching version range, such as
+     * <code>feature.x@&gt;=10.1</code>, or else from the unqualified key.
+     *
+     * @param name The unqualified property name
+     * @param version The version
+     * @return The value, or null if there is no such property
+     * @see VersionIndex
+     */
+    public String getVersionedProperty(String name, Version version) {
+        String key = versionIndex().getKey(name, version.getPacked());
+        return getProperty(null != key ? key : name);
+    }
+
+    /**
+     * Provides the index of the keys qualified with version ranges. It is
+     * built on first use and again after this specification or its defaults
+     * change.
+     *
+     * @return The version index for the current version
+     */
+    public VersionIndex versionIndex() {
+        long version = getVersion();
+        Indexed<VersionIndex> indexed = versionIndex;
+        if (null == indexed || indexed.version != version) {
+            indexed = new Indexed<>(version, VersionIndex.of(this));
+            versionIndex = indexed;
+        }
+        return indexed.index;
+    }
+
+    /**
+     * An index and the version of the specification it was built from.
+     */
+    static final class Indexed<T> {
+
+        final long version;
+
+        final T index;
+
+        Indexed(long version, T index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+
     public Map<String, Object> convertToMap() {
         return convertToMap(this);
     }
@@ -150,6 +678,466 @@ public class Specification extends Properties {
         return null != getProperty((String) name);
     }
 
+    /**
+     * Looks up a property, reporting the lookup to the instrumentation from
+     * the load options, if any. A lookup is a hit when the property is found
+     * without consulting defaults.
+     *
+     * @param name The property name
+     * @return The property value, or null if not present
+     */
+    @Override
+    public String getProperty(String name) {
+        Instrumentation instrumentation = loadOptions.getInstrumentation();
+        if (null == instrumentation)
+            return super.getProperty(name);
+        Object value = super.get(name);
+        boolean hit = value instanceof String;
+        instrumentation.lookup(name, hit);
+        if (hit)
+            return (String) value;
+        return (null != defaults) ? defaults.getProperty(name) : null;
+    }
+
+    /**
+     * Looks up a property without reporting the lookup, for internal copies.
+     */
+    String getUninstrumentedProperty(String name) {
+        return super.getProperty(name);
+    }
+
+    /**
+     * Provides a version number that changes whenever this specification or
+     * any specification in its defaults chain is modified.
+     *
+     * <p>Modifications to plain <code>Properties</code> defaults are not
+     * tracked; only defaults that are themselves specifications contribute
+     * to the version.</p>
+     *
+     * @return The current version of this specification
+     */
+    public long getVersion() {
+        long version = modifications.get();
+        return (defaults instanceof Specification)
+            ? version + ((Specification) defaults).getVersion()
+            : version;
+    }
+
+    /**
+     * Provides a stamp that changes whenever this specification or any
+     * specification in its defaults chain is modified, with one volatile
+     * read. The stamp is shared by all specifications connected through
+     * defaults, so it also changes when a specification that shares the
+     * same defaults is modified; it tells callers when to look again, not
+     * what changed.
+     *
+     * @return The current modification stamp
+     */
+    long getModificationStamp() {
+        return stamp.get();
+    }
+
+    /**
+     * Checks whether <code>#getVersion</code> and the modification stamp
+     * cover the whole defaults chain, which they do unless the chain ends
+     * in plain <code>Properties</code>. Caches keyed on them must check the
+     * value itself when they do not. The defaults never change, so this is
+     * worked out when the specification is created.
+     *
+     * @return True iff every defaults in the chain is a specification
+     */
+    boolean isVersionTracked() {
+        return versionTracked;
+    }
+
+    private void modified() {
+        modifications.incrementAndGet();
+        stamp.incrementAndGet();
+    }
+
+    /**
+     * Makes every subsequent modification of this specification throw
+     * <code>UnsupportedOperationException</code>, so that one loaded
+     * instance can be shared safely. Sealing can't be undone and does not
+     * extend to the defaults.
+     */
+    protected void seal() {
+        sealed = true;
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    private void checkSealed() {
+        if (sealed)
+            throw new UnsupportedOperationException("Sealed specifications can not be modified");
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+        checkSealed();
+        Object result = super.put(key, value);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized void putAll(Map<?, ?> map) {
+        checkSealed();
+        super.putAll(map);
+        modified();
+    }
+
+    @Override
+    public synchronized Object putIfAbsent(Object key, Object value) {
+        checkSealed();
+        Object result = super.putIfAbsent(key, value);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        checkSealed();
+        Object result = super.remove(key);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        checkSealed();
+        boolean result = super.remove(key, value);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized Object replace(Object key, Object value) {
+        checkSealed();
+        Object result = super.replace(key, value);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+        checkSealed();
+        boolean result = super.replace(key, oldValue, newValue);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        checkSealed();
+        super.replaceAll(function);
+        modified();
+    }
+
+    @Override
+    public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> function) {
+        checkSealed();
+        Object result = super.compute(key, function);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> function) {
+        checkSealed();
+        Object result = super.computeIfAbsent(key, function);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> function) {
+        checkSealed();
+        Object result = super.computeIfPresent(key, function);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> function) {
+        checkSealed();
+        Object result = super.merge(key, value, function);
+        modified();
+        return result;
+    }
+
+    @Override
+    public synchronized void clear() {
+        checkSealed();
+        super.clear();
+        modified();
+    }
+
+    /**
+     * Removes and sets properties as one modification, under the lock of
+     * this specification, so that code synchronizing on it or comparing
+     * versions sees either none or all of the changes.
+     *
+     * @param changed The properties to add or modify
+     * @param removedKeys The keys to remove
+     * @throws UnsupportedOperationException If this specification is sealed
+     */
+    synchronized void update(Map<String, String> changed, Collection<String> removedKeys) {
+        checkSealed();
+        for (String key: removedKeys)
+            super.remove(key);
+        for (Map.Entry<String, String> entry: changed.entrySet())
+            super.put(entry.getKey(), entry.getValue());
+        modified();
+    }
+
+    /**
+     * Provides the keys; removing through the view or its iterator is
+     * checked and counted like <code>#remove</code>.
+     */
+    @Override
+    public Set<Object> keySet() {
+        return new GuardedSet<>(super.keySet());
+    }
+
+    /**
+     * Provides the entries; removing through the view or its iterator, and
+     * setting the value of an entry, are checked and counted like the
+     * other modifications.
+     */
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return new GuardedSet<Map.Entry<Object, Object>>(super.entrySet()) {
+
+            @Override
+            Map.Entry<Object, Object> guard(Map.Entry<Object, Object> entry) {
+                return new GuardedEntry(entry);
+            }
+        };
+    }
+
+    /**
+     * Provides the values; removing through the view or its iterator is
+     * checked and counted like <code>#remove</code>.
+     */
+    @Override
+    public Collection<Object> values() {
+        return new GuardedCollection<>(super.values());
+    }
+
+    /**
+     * A view of the underlying table that routes every modification through
+     * <code>#checkSealed</code> and <code>#modified</code>, which the views
+     * of the table would otherwise bypass.
+     */
+    private class GuardedCollection<E> extends AbstractCollection<E> {
+
+        private final Collection<E> collection;
+
+        GuardedCollection(Collection<E> collection) {
+            this.collection = collection;
+        }
+
+        /**
+         * @return The element to hand out for one from the underlying view
+         */
+        E guard(E element) {
+            return element;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            Iterator<E> iterator = collection.iterator();
+            return new Iterator<E>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    return guard(iterator.next());
+                }
+
+                @Override
+                public void remove() {
+                    synchronized (Specification.this) {
+                        checkSealed();
+                        iterator.remove();
+                        modified();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return collection.size();
+        }
+
+        @Override
+        public boolean contains(Object element) {
+            return collection.contains(element);
+        }
+
+        @Override
+        public boolean remove(Object element) {
+            synchronized (Specification.this) {
+                checkSealed();
+                boolean result = collection.remove(element);
+                modified();
+                return result;
+            }
+        }
+
+        @Override
+        public void clear() {
+            Specification.this.clear();
+        }
+    }
+
+    private class GuardedSet<E> extends AbstractSet<E> {
+
+        private final GuardedCollection<E> collection;
+
+        GuardedSet(Set<E> set) {
+            this.collection = new GuardedCollection<E>(set) {
+
+                @Override
+                E guard(E element) {
+                    return GuardedSet.this.guard(element);
+                }
+            };
+        }
+
+        E guard(E element) {
+            return element;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return collection.iterator();
+        }
+
+        @Override
+        public int size() {
+            return collection.size();
+        }
+
+        @Override
+        public boolean contains(Object element) {
+            return collection.contains(element);
+        }
+
+        @Override
+        public boolean remove(Object element) {
+            return collection.remove(element);
+        }
+
+        @Override
+        public void clear() {
+            collection.clear();
+        }
+    }
+
+    private class GuardedEntry implements Map.Entry<Object, Object> {
+
+        private final Map.Entry<Object, Object> entry;
+
+        GuardedEntry(Map.Entry<Object, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public Object getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            synchronized (Specification.this) {
+                checkSealed();
+                Object result = entry.setValue(value);
+                modified();
+                return result;
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return entry.equals(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return entry.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
+
+    /**
+     * Looks up the parsed value for a property, parsing the raw value only if
+     * it changed since the last lookup of the same kind, and reports the
+     * lookup to the instrumentation from the load options, if any. This is
+     * the entry point of the typed accessors, so every call is counted,
+     * whether or not the parsed value was cached.
+     *
+     * @param name The property name to look up
+     * @param kind The type to parse the value to
+     * @return The parsed value, which may be absent but is never null
+     */
+    ParsedValue getParsed(String name, ParsedValue.Kind kind) {
+        ParsedValue parsed = lookUpParsed(name, kind);
+        Instrumentation instrumentation = loadOptions.getInstrumentation();
+        if (null != instrumentation)
+            instrumentation.lookup(name, parsed.hit);
+        return parsed;
+    }
+
+    /**
+     * Looks up the parsed value for a property without reporting the lookup.
+     *
+     * <p>The cache holds one parsed value per name, so reading the same
+     * property as two different types re-parses on every switch. When the
+     * defaults chain ends in plain <code>Properties</code>, whose changes
+     * do not show in the modification stamp, the raw value is looked up and compared
+     * on every call, and only parsed again if it differs.</p>
+     *
+     * @param name The property name to look up
+     * @param kind The type to parse the value to
+     * @return The parsed value, which may be absent but is never null
+     */
+    ParsedValue lookUpParsed(String name, ParsedValue.Kind kind) {
+        long version = stamp.get();
+        ParsedValue parsed = parsedValues.get(name);
+        boolean cached = null != parsed && parsed.kind == kind;
+        if (cached && versionTracked && parsed.version == version)
+            return parsed; // The steady state, no allocation
+        Object local = super.get(name);
+        boolean hit = local instanceof String;
+        String raw = hit ? (String) local : (null != defaults) ? defaults.getProperty(name) : null;
+        if (cached && Objects.equals(raw, parsed.raw)) {
+            if (parsed.version == version && parsed.hit == hit)
+                return parsed; // Untracked defaults, but this property did not change
+            parsed = parsed.at(version, hit); // Something else changed, this property did not
+        } else
+            parsed = ParsedValue.parse(name, kind, version, raw, hit);
+        parsedValues.put(name, parsed);
+        return parsed;
+    }
+
     /**
      * Accessor for a boolean property; returns true if the property value is
      * "true", returns false in all other cases unless the property is not
@@ -172,8 +1160,21 @@ public class Specification extends Properties {
      * @return The boolean value for the parameter property, or the default
      */
     public Boolean getBoolean(String name, Boolean defaultValue) {
-        String value = getProperty(name);
-        return (null != value) ? Boolean.valueOf(value) : defaultValue;
+        ParsedValue parsed = getParsed(name, ParsedValue.Kind.BOOLEAN);
+        return parsed.isPresent() ? (Boolean) parsed.value : defaultValue;
+    }
+
+    /**
+     * Primitive accessor for a boolean property; parses the value once and
+     * caches it until the property changes.
+     *
+     * @param name The property name to access
+     * @param defaultValue The value to return if the property is not present
+     * @return The boolean value for the parameter property, or the default
+     */
+    public boolean getBoolean(String name, boolean defaultValue) {
+        ParsedValue parsed = getParsed(name, ParsedValue.Kind.BOOLEAN);
+        return parsed.isPresent() ? 0L != parsed.bits : defaultValue;
     }
 
     /**
@@ -205,14 +1206,75 @@ public class Specification extends Properties {
      * @throws RuntimeException If the value can't be parsed to an integer
      */
     public Integer getInteger(String name, Integer defaultValue) {
-        Integer result = defaultValue;
-        String value = getProperty(name);
-        if (null != value)
-            try {
-                result = Integer.valueOf(value);
-            } catch (NumberFormatException x) {
-                throw new RuntimeException("Not an integer property: " + name, x);
-            }
-        return result;
+        ParsedValue parsed = getParsed(name, ParsedValue.Kind.INT);
+        return parsed.isPresent() ? (Integer) parsed.value : defaultValue;
+    }
+
+    /**
+     * Primitive accessor for an integer property; parses the value once and
+     * caches it until the property changes.
+     *
+     * @param name The property name to look up
+     * @param defaultValue The default value when the property is not defined
+     * @return The integer value for the property, or the default if not present
+     * @throws RuntimeException If the value can't be parsed to an integer
+     */
+    public int getInt(String name, int defaultValue) {
+        ParsedValue parsed = getParsed(name, ParsedValue.Kind.INT);
+        return parsed.isPresent() ? (int) parsed.bits : defaultValue;
+    }
+
+    /**
+     * Primitive accessor for a long property; parses the value once and
+     * caches it until the property changes.
+     *
+     * @param name The property name to look up
+     * @param defaultValue The default value when the property is not defined
+     * @return The long value for the property, or the default if not present
+     * @throws RuntimeException If the value can't be parsed to a long
+     */
+    public long getLong(String name, long defaultValue) {
+        ParsedValue parsed = getParsed(name, ParsedValue.Kind.LONG);
+        return parsed.isPresent() ? parsed.bits : defaultValue;
+    }
+
+    /**
+     * Primitive accessor for a double property; parses the value once and
+     * caches it until the property changes.
+     *
+     * @param name The property name to look up
+     * @param defaultValue The default value when the property is not defined
+     * @return The double value for the property, or the default if not present
+     * @throws RuntimeException If the value can't be parsed to a double
+     */
+    public double getDouble(String name, double defaultValue) {
+        ParsedValue parsed = getParsed(name, ParsedValue.Kind.DOUBLE);
+        return parsed.isPresent() ? Double.longBitsToDouble(parsed.bits) : defaultValue;
+    }
+
+    /**
+     * Accessor for a duration property; the value is either an ISO-8601
+     * duration (<code>PT30S</code>) or a plain number of milliseconds.
+     *
+     * @param name The property name to look up
+     * @return The duration value for the property, or null if not present
+     * @throws RuntimeException If the value can't be parsed to a duration
+     */
+    public Duration getDuration(String name) {
+        return getDuration(name, null);
+    }
+
+    /**
+     * Accessor for a duration property; the value is either an ISO-8601
+     * duration (<code>PT30S</code>) or a plain number of milliseconds.
+     *
+     * @param name The property name to look up
+     * @param defaultValue The default value when the property is not defined
+     * @return The duration value for the property, or the default if not present
+     * @throws RuntimeException If the value can't be parsed to a duration
+     */
+    public Duration getDuration(String name, Duration defaultValue) {
+        ParsedValue parsed = getParsed(name, ParsedValue.Kind.DURATION);
+        return parsed.isPresent() ? (Duration) parsed.value : defaultValue;
     }
 }
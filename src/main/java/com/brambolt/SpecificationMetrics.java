@@ -0,0 +1,243 @@
+package com.brambolt;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects load timings, lookup counts and reload counts.
+ *
+ * <p>Counters are <code>LongAdder</code>s, which stripe updates across
+ * cells, so counting lookups from many threads does not contend on a
+ * single variable. Per-key counters are created on the first lookup of
+ * each key and kept until <code>#reset</code>.</p>
+ *
+ * <p>Only the latest load of each resource or file is kept, so the layer
+ * figures describe the layers as they were last loaded, and reloading
+ * the same layers over and over does not make them grow. Reloads are
+ * counted and timed as totals, along with the latest reload.</p>
+ *
+ * <p>The metrics can be published through JMX with <code>#register</code>.</p>
+ */
+public class SpecificationMetrics implements Instrumentation, SpecificationMetricsMXBean {
+
+    private static final int HOT_KEY_COUNT = 10;
+
+    /**
+     * The time and size of a single loaded resource or file.
+     */
+    private static class LayerLoad {
+
+        final String path;
+
+        final long nanos;
+
+        final long bytes;
+
+        LayerLoad(String path, long nanos, long bytes) {
+            this.path = path;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The latest load of each path, in the order the paths were first
+     * loaded; guarded by itself.
+     */
+    private final Map<String, LayerLoad> layerLoads = new LinkedHashMap<>();
+
+    private final Map<String, LongAdder> hits = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> misses = new ConcurrentHashMap<>();
+
+    private final LongAdder reloads = new LongAdder();
+
+    private final LongAdder reloadNanos = new LongAdder();
+
+    private final LongAdder reloadChanges = new LongAdder();
+
+    private volatile long lastReloadNanos;
+
+    private volatile int lastReloadChanges;
+
+    @Override
+    public void layerLoaded(String path, long nanos, long bytes) {
+        synchronized (layerLoads) {
+            layerLoads.put(path, new LayerLoad(path, nanos, bytes));
+        }
+    }
+
+    @Override
+    public void lookup(String name, boolean hit) {
+        Map<String, LongAdder> counters = hit ? hits : misses;
+        LongAdder counter = counters.get(name);
+        if (null == counter)
+            counter = counters.computeIfAbsent(name, key -> new LongAdder());
+        counter.increment();
+    }
+
+    @Override
+    public void reloaded(long nanos, int changed) {
+        reloads.increment();
+        reloadNanos.add(nanos);
+        reloadChanges.add(changed);
+        lastReloadNanos = nanos;
+        lastReloadChanges = changed;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param name The name to register under, for example the group identifier
+     * @return The object name the metrics were registered with
+     * @throws IllegalStateException If the metrics can't be registered
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName(
+                "com.brambolt.wrench:type=SpecificationMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException x) {
+            throw new IllegalStateException("Unable to register metrics: " + name, x);
+        }
+    }
+
+    @Override
+    public int getLayerCount() {
+        synchronized (layerLoads) {
+            return layerLoads.size();
+        }
+    }
+
+    @Override
+    public long getBytesLoaded() {
+        long bytes = 0L;
+        for (LayerLoad layerLoad: getLayerLoads())
+            bytes += layerLoad.bytes;
+        return bytes;
+    }
+
+    @Override
+    public long getLoadMillis() {
+        long nanos = 0L;
+        for (LayerLoad layerLoad: getLayerLoads())
+            nanos += layerLoad.nanos;
+        return nanos / 1000000L;
+    }
+
+    @Override
+    public Map<String, Long> getLayerLoadMillis() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (LayerLoad layerLoad: getLayerLoads())
+            result.put(layerLoad.path, layerLoad.nanos / 1000000L);
+        return result;
+    }
+
+    private List<LayerLoad> getLayerLoads() {
+        synchronized (layerLoads) {
+            return new ArrayList<>(layerLoads.values());
+        }
+    }
+
+    @Override
+    public long getLookups() {
+        return sum(hits) + sum(misses);
+    }
+
+    @Override
+    public long getMisses() {
+        return sum(misses);
+    }
+
+    /**
+     * @param name The property name
+     * @return The number of lookups of the property
+     */
+    public long getLookups(String name) {
+        return count(hits, name) + count(misses, name);
+    }
+
+    /**
+     * @param name The property name
+     * @return The number of lookups of the property that consulted defaults
+     */
+    public long getMisses(String name) {
+        return count(misses, name);
+    }
+
+    @Override
+    public long getReloads() {
+        return reloads.sum();
+    }
+
+    @Override
+    public long getReloadMillis() {
+        return reloadNanos.sum() / 1000000L;
+    }
+
+    @Override
+    public long getLastReloadMillis() {
+        return lastReloadNanos / 1000000L;
+    }
+
+    @Override
+    public long getReloadChanges() {
+        return reloadChanges.sum();
+    }
+
+    @Override
+    public int getLastReloadChanges() {
+        return lastReloadChanges;
+    }
+
+    @Override
+    public String[] getHotKeys() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry: hits.entrySet())
+            counts.merge(entry.getKey(), entry.getValue().sum(), Long::sum);
+        for (Map.Entry<String, LongAdder> entry: misses.entrySet())
+            counts.merge(entry.getKey(), entry.getValue().sum(), Long::sum);
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+        int count = Math.min(HOT_KEY_COUNT, entries.size());
+        String[] result = new String[count];
+        for (int i = 0; i < count; ++i)
+            result[i] = entries.get(i).getKey();
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        synchronized (layerLoads) {
+            layerLoads.clear();
+        }
+        hits.clear();
+        misses.clear();
+        reloads.reset();
+        reloadNanos.reset();
+        reloadChanges.reset();
+        lastReloadNanos = 0L;
+        lastReloadChanges = 0;
+    }
+
+    private static long sum(Map<String, LongAdder> counters) {
+        long sum = 0L;
+        for (LongAdder counter: counters.values())
+            sum += counter.sum();
+        return sum;
+    }
+
+    private static long count(Map<String, LongAdder> counters, String name) {
+        LongAdder counter = counters.get(name);
+        return null != counter ? counter.sum() : 0L;
+    }
+}
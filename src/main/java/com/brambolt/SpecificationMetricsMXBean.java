@@ -0,0 +1,58 @@
+package com.brambolt;
+
+import java.util.Map;
+
+/**
+ * The management interface of <code>SpecificationMetrics</code>.
+ */
+public interface SpecificationMetricsMXBean {
+
+    /**
+     * @return The number of distinct resources and files loaded
+     */
+    int getLayerCount();
+
+    /**
+     * @return The bytes read by the latest load of each resource or file
+     */
+    long getBytesLoaded();
+
+    /**
+     * @return The time in milliseconds spent by the latest load of each
+     *         resource or file
+     */
+    long getLoadMillis();
+
+    /**
+     * @return The time in milliseconds of the latest load per resource or
+     *         file path
+     */
+    Map<String, Long> getLayerLoadMillis();
+
+    long getLookups();
+
+    long getMisses();
+
+    long getReloads();
+
+    /**
+     * @return The time in milliseconds spent by all reloads
+     */
+    long getReloadMillis();
+
+    long getLastReloadMillis();
+
+    /**
+     * @return The number of properties changed by all reloads
+     */
+    long getReloadChanges();
+
+    int getLastReloadChanges();
+
+    /**
+     * @return The most frequently looked up property names, most frequent first
+     */
+    String[] getHotKeys();
+
+    void reset();
+}
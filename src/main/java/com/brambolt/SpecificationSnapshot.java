@@ -0,0 +1,273 @@
+package com.brambolt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The resolved properties of a specification, identified by the SHA-256
+ * hash of their content.
+ *
+ * <p>The content hash covers the sorted keys and values, each written as
+ * its UTF-8 byte length and bytes, so two nodes with the same resolved
+ * properties have the same hash however their properties were loaded.
+ * When the specification recorded its layers, each layer is hashed the
+ * same way, with its path, and the root hash covers the layer hashes in
+ * load order and the content hash. Nodes whose content hashes differ can
+ * compare layer hashes to find the layer they disagree on.</p>
+ *
+ * <p>Snapshots are numbered by the publisher; see
+ * <code>SnapshotPublisher</code>. The difference between two snapshots is
+ * a <code>SnapshotDelta</code>.</p>
+ */
+public final class SpecificationSnapshot {
+
+    /**
+     * The snapshot of no properties, which every subscriber starts from.
+     */
+    public static final SpecificationSnapshot EMPTY =
+        new SpecificationSnapshot(0L, new String[0], new String[0], Collections.emptyMap());
+
+    /**
+     * Takes a snapshot of the resolved properties, including defaults, and
+     * of the layers recorded by the specification and its defaults.
+     *
+     * @param properties The properties
+     * @param sequence The snapshot number
+     * @return The snapshot
+     */
+    public static SpecificationSnapshot of(Properties properties, long sequence) {
+        String[] keys = properties.stringPropertyNames().toArray(new String[0]);
+        Arrays.sort(keys);
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; ++i)
+            values[i] = properties.getProperty(keys[i]);
+        return new SpecificationSnapshot(sequence, keys, values, hashLayers(properties));
+    }
+
+    /**
+     * Creates a snapshot from resolved values.
+     *
+     * @param values The values
+     * @param sequence The snapshot number
+     * @return The snapshot, without layer hashes
+     */
+    public static SpecificationSnapshot of(Map<String, String> values, long sequence) {
+        TreeMap<String, String> sorted = new TreeMap<>(values);
+        return new SpecificationSnapshot(sequence,
+            sorted.keySet().toArray(new String[0]), sorted.values().toArray(new String[0]),
+            Collections.emptyMap());
+    }
+
+    /**
+     * @return The layer hashes by path, defaults first
+     */
+    private static Map<String, String> hashLayers(Properties properties) {
+        List<Specification> chain = new ArrayList<>();
+        for (Properties current = properties; current instanceof Specification;
+             current = ((Specification) current).getDefaults())
+            chain.add(0, (Specification) current);
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (Specification specification: chain)
+            for (Layer layer: specification.getLayers()) {
+                MessageDigest digest = newDigest();
+                update(digest, layer.getPath());
+                String[] keys = layer.getValues().stringPropertyNames().toArray(new String[0]);
+                Arrays.sort(keys);
+                for (String key: keys) {
+                    update(digest, key);
+                    update(digest, layer.getValues().getProperty(key));
+                }
+                hashes.put(layer.getPath(), toHex(digest.digest()));
+            }
+        return Collections.unmodifiableMap(hashes);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException x) {
+            throw new IllegalStateException("SHA-256 is not available", x);
+        }
+    }
+
+    private static void update(MessageDigest digest, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        digest.update((byte) (length >>> 24));
+        digest.update((byte) (length >>> 16));
+        digest.update((byte) (length >>> 8));
+        digest.update((byte) length);
+        digest.update(bytes);
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; ++i) {
+            chars[2 * i] = Character.forDigit((bytes[i] >>> 4) & 0xf, 16);
+            chars[2 * i + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(chars);
+    }
+
+    private final long sequence;
+
+    /**
+     * The sorted keys.
+     */
+    private final String[] keys;
+
+    /**
+     * The values, in key order.
+     */
+    private final String[] values;
+
+    private final String hash;
+
+    private final Map<String, String> layerHashes;
+
+    private final String rootHash;
+
+    SpecificationSnapshot(long sequence, String[] keys, String[] values, Map<String, String> layerHashes) {
+        this.sequence = sequence;
+        this.keys = keys;
+        this.values = values;
+        this.layerHashes = layerHashes;
+        MessageDigest digest = newDigest();
+        for (int i = 0; i < keys.length; ++i) {
+            update(digest, keys[i]);
+            update(digest, values[i]);
+        }
+        this.hash = toHex(digest.digest());
+        MessageDigest root = newDigest();
+        for (Map.Entry<String, String> entry: layerHashes.entrySet()) {
+            update(root, entry.getKey());
+            update(root, entry.getValue());
+        }
+        update(root, hash);
+        this.rootHash = toHex(root.digest());
+    }
+
+    /**
+     * @return The snapshot number assigned by the publisher
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The hex SHA-256 hash of the resolved properties
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The hex SHA-256 hashes of the recorded layers by path, in
+     *         load order; empty if the layers were not recorded
+     */
+    public Map<String, String> getLayerHashes() {
+        return layerHashes;
+    }
+
+    /**
+     * @return The hex SHA-256 hash of the layer hashes and the content hash
+     */
+    public String getRootHash() {
+        return rootHash;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param key The key
+     * @return The value, or null if there is no such property
+     */
+    public String get(String key) {
+        int index = Arrays.binarySearch(keys, key);
+        return (0 <= index) ? values[index] : null;
+    }
+
+    /**
+     * @return The resolved properties, sorted by key
+     */
+    public Map<String, String> getValues() {
+        Map<String, String> map = new LinkedHashMap<>(2 * keys.length);
+        for (int i = 0; i < keys.length; ++i)
+            map.put(keys[i], values[i]);
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Computes the changes from an earlier snapshot to this one, walking
+     * the sorted keys of both once.
+     *
+     * @param base The earlier snapshot
+     * @return The delta that turns the base into this snapshot
+     */
+    public SnapshotDelta diff(SpecificationSnapshot base) {
+        List<String> changedKeys = new ArrayList<>();
+        List<String> changedValues = new ArrayList<>();
+        List<String> removedKeys = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < base.keys.length || j < keys.length) {
+            int order = (i == base.keys.length) ? 1 : (j == keys.length) ? -1 : base.keys[i].compareTo(keys[j]);
+            if (0 > order)
+                removedKeys.add(base.keys[i++]);
+            else if (0 < order) {
+                changedKeys.add(keys[j]);
+                changedValues.add(values[j++]);
+            } else {
+                if (!base.values[i].equals(values[j])) {
+                    changedKeys.add(keys[j]);
+                    changedValues.add(values[j]);
+                }
+                ++i;
+                ++j;
+            }
+        }
+        return new SnapshotDelta(base.sequence, base.hash, sequence, hash,
+            changedKeys.toArray(new String[0]), changedValues.toArray(new String[0]),
+            removedKeys.toArray(new String[0]));
+    }
+
+    /**
+     * Applies a delta to this snapshot.
+     *
+     * @param delta The delta, based on this snapshot
+     * @return The snapshot the delta produces
+     * @throws IllegalArgumentException If the delta is not based on this snapshot
+     * @throws IllegalStateException If the result does not have the hash of the delta
+     */
+    public SpecificationSnapshot apply(SnapshotDelta delta) {
+        if (!hash.equals(delta.getBaseHash()))
+            throw new IllegalArgumentException("Delta is not based on snapshot " + hash);
+        TreeMap<String, String> next = new TreeMap<>();
+        for (int i = 0; i < keys.length; ++i)
+            next.put(keys[i], values[i]);
+        delta.applyTo(next);
+        SpecificationSnapshot result = new SpecificationSnapshot(delta.getSequence(),
+            next.keySet().toArray(new String[0]), next.values().toArray(new String[0]),
+            Collections.emptyMap());
+        if (!result.hash.equals(delta.getHash()))
+            throw new IllegalStateException(
+                String.format("Delta produced %s instead of snapshot %s", result.hash, delta.getHash()));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SpecificationSnapshot{sequence=" + sequence + ", hash=" + hash + ", size=" + keys.length + "}";
+    }
+}
@@ -0,0 +1,84 @@
+package com.brambolt;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares equal strings and equal structured maps between specifications.
+ *
+ * <p>Processes that hold many instance properties loaded from the same
+ * resources, for example one per tenant, otherwise hold one copy of every
+ * key, value and unit map per instance. With a pool in the load options,
+ * the loader replaces each newly decoded key and value with the pooled
+ * instance, and the structured views replace each unit map (such as
+ * <code>environments.dev</code>) with a pooled, unmodifiable map, so heap
+ * use grows with the distinct data rather than with the number of
+ * instances.</p>
+ *
+ * <p>The pool only holds its entries weakly: an entry goes away once no
+ * specification uses it. Lookups are synchronized on the pool.</p>
+ */
+public class ValuePool {
+
+    private final Map<Object, WeakReference<Object>> entries = new WeakHashMap<>();
+
+    /**
+     * @param value The string
+     * @return The pooled string equal to the value
+     */
+    public String intern(String value) {
+        if (null == value)
+            return null;
+        synchronized (entries) {
+            return (String) pooled(value);
+        }
+    }
+
+    /**
+     * Pools a structured map, and the maps nested in it.
+     *
+     * <p>The result is unmodifiable, at every level, since it can be shared
+     * by any number of specifications.</p>
+     *
+     * @param map The map
+     * @return The pooled, unmodifiable map equal to the map
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> intern(Map<String, Object> map) {
+        if (null == map)
+            return null;
+        Map<String, Object> copy = new LinkedHashMap<>(map.size());
+        synchronized (entries) {
+            for (Map.Entry<String, Object> entry: map.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof Map)
+                    value = intern((Map<String, Object>) value);
+                else if (value instanceof String)
+                    value = pooled(value);
+                copy.put((String) pooled(entry.getKey()), value);
+            }
+            return (Map<String, Object>) pooled(Collections.unmodifiableMap(copy));
+        }
+    }
+
+    /**
+     * @return The number of pooled strings and maps still in use
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Object pooled(Object value) {
+        WeakReference<Object> reference = entries.get(value);
+        Object pooled = (null != reference) ? reference.get() : null;
+        if (null != pooled)
+            return pooled;
+        entries.put(value, new WeakReference<>(value));
+        return value;
+    }
+}
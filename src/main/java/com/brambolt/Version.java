@@ -0,0 +1,202 @@
+package com.brambolt;
+
+/**
+ * A four-segment numeric version, such as 10.1.2.3, packed into a long.
+ *
+ * <p>Each segment takes sixteen bits, major first, so packed versions
+ * compare numerically with a single unsigned comparison. Missing segments
+ * are zero: 10.1 is 10.1.0.0. The static <code>#pack</code> methods parse
+ * and pack without allocating, for bulk use; the value type wraps a packed
+ * version for use as a key or in collections.</p>
+ */
+public final class Version implements Comparable<Version> {
+
+    /**
+     * The largest value of a segment.
+     */
+    public static final int MAX_SEGMENT = 0xffff;
+
+    /**
+     * Parses a version of one to four numeric segments.
+     *
+     * @param text The version text
+     * @return The version
+     * @throws IllegalArgumentException If the text is not a version
+     */
+    public static Version parse(CharSequence text) {
+        return new Version(pack(text));
+    }
+
+    /**
+     * @param packed A packed version
+     * @return The version
+     */
+    public static Version of(long packed) {
+        return new Version(packed);
+    }
+
+    public static Version of(int major, int minor, int micro, int patch) {
+        return new Version(pack(major, minor, micro, patch));
+    }
+
+    /**
+     * Parses and packs a version of one to four numeric segments, without
+     * allocating.
+     *
+     * @param text The version text
+     * @return The packed version
+     * @throws IllegalArgumentException If the text is not a version
+     */
+    public static long pack(CharSequence text) {
+        return pack(text, 0, text.length());
+    }
+
+    /**
+     * Parses and packs part of a text, without allocating.
+     *
+     * @param text The text
+     * @param start The start of the version, inclusive
+     * @param end The end of the version, exclusive
+     * @return The packed version
+     * @throws IllegalArgumentException If the part is not a version
+     */
+    public static long pack(CharSequence text, int start, int end) {
+        long packed = 0L;
+        int segments = 0;
+        int segment = 0;
+        int digits = 0;
+        for (int i = start; i <= end; ++i) {
+            char c = (i < end) ? text.charAt(i) : '.';
+            if ('0' <= c && '9' >= c) {
+                segment = 10 * segment + (c - '0');
+                if (MAX_SEGMENT < segment)
+                    throw invalid(text, start, end);
+                ++digits;
+            } else if ('.' == c && 0 < digits && 4 > segments) {
+                packed = (packed << 16) | segment;
+                ++segments;
+                segment = 0;
+                digits = 0;
+            } else
+                throw invalid(text, start, end);
+        }
+        return packed << (16 * (4 - segments));
+    }
+
+    public static long pack(int major, int minor, int micro, int patch) {
+        return ((long) check(major) << 48) | ((long) check(minor) << 32) | ((long) check(micro) << 16) | check(patch);
+    }
+
+    /**
+     * Compares packed versions.
+     *
+     * @param left A packed version
+     * @param right A packed version
+     * @return Less than, equal to or greater than zero, as for <code>Comparator</code>
+     */
+    public static int compare(long left, long right) {
+        return Long.compareUnsigned(left, right);
+    }
+
+    private static int check(int segment) {
+        if (0 > segment || MAX_SEGMENT < segment)
+            throw new IllegalArgumentException("Version segment out of range: " + segment);
+        return segment;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text, int start, int end) {
+        return new IllegalArgumentException("Not a version: " + text.subSequence(start, end));
+    }
+
+    private final long packed;
+
+    private Version(long packed) {
+        this.packed = packed;
+    }
+
+    public long getPacked() {
+        return packed;
+    }
+
+    public int getMajor() {
+        return (int) (packed >>> 48) & MAX_SEGMENT;
+    }
+
+    public int getMinor() {
+        return (int) (packed >>> 32) & MAX_SEGMENT;
+    }
+
+    public int getMicro() {
+        return (int) (packed >>> 16) & MAX_SEGMENT;
+    }
+
+    public int getPatch() {
+        return (int) packed & MAX_SEGMENT;
+    }
+
+    /**
+     * Formats the short form, as <code>Versioning#shorten4</code> does:
+     * 10.1.2.3 is 101203.
+     *
+     * @return The short form
+     */
+    public String toShortForm() {
+        char[] chars = new char[22];
+        int length = appendDigits(chars, 0, getMajor(), 1);
+        length = appendDigits(chars, length, getMinor(), 1);
+        length = appendDigits(chars, length, getMicro(), 1);
+        length = appendDigits(chars, length, getPatch(), 2);
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Appends the short form without creating intermediate strings.
+     *
+     * @param builder The builder to append to
+     * @return The builder
+     */
+    public StringBuilder appendShortForm(StringBuilder builder) {
+        appendDigits(builder, getMajor(), 1);
+        appendDigits(builder, getMinor(), 1);
+        appendDigits(builder, getMicro(), 1);
+        appendDigits(builder, getPatch(), 2);
+        return builder;
+    }
+
+    private static int appendDigits(char[] chars, int position, int value, int width) {
+        int digits = (10000 <= value) ? 5 : (1000 <= value) ? 4 : (100 <= value) ? 3 : (10 <= value) ? 2 : 1;
+        for (int i = digits; i < width; ++i)
+            chars[position++] = '0';
+        for (int i = position + digits - 1; i >= position; --i) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    private static void appendDigits(StringBuilder builder, int value, int width) {
+        if (2 == width && 10 > value)
+            builder.append('0');
+        builder.append(value);
+    }
+
+    @Override
+    public int compareTo(Version other) {
+        return compare(packed, other.packed);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof Version) && packed == ((Version) other).packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(packed);
+    }
+
+    @Override
+    public String toString() {
+        return getMajor() + "." + getMinor() + "." + getMicro() + "." + getPatch();
+    }
+}
@@ -0,0 +1,217 @@
+package com.brambolt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the keys qualified by a version range, such as
+ * <code>feature.x@&gt;=10.1</code>, by their unqualified name.
+ *
+ * <p>A qualifier is <code>@</code> followed by one of the operators
+ * <code>=</code>, <code>&gt;=</code>, <code>&gt;</code>, <code>&lt;=</code>
+ * and <code>&lt;</code>, or no operator for <code>=</code>, and a version of
+ * one to four numeric segments. Keys with any other text after the
+ * <code>@</code> are not versioned.</p>
+ *
+ * <p>For each name the bounds are packed into sorted arrays, so a lookup
+ * is a binary search. When several qualified keys match a version the most
+ * specific one is chosen: an exact match first, then the greatest lower
+ * bound at or below the version, then the least upper bound above it.</p>
+ */
+public final class VersionIndex {
+
+    /**
+     * The qualified keys of one name, by kind of bound, each sorted by bound.
+     */
+    private static final class Ranges {
+
+        long[] exact;
+
+        String[] exactKeys;
+
+        /**
+         * Inclusive lower bounds; <code>&gt; v</code> is stored as <code>&gt;= v + 1</code>.
+         */
+        long[] lower;
+
+        String[] lowerKeys;
+
+        /**
+         * Exclusive upper bounds; <code>&lt;= v</code> is stored as <code>&lt; v + 1</code>.
+         */
+        long[] upper;
+
+        String[] upperKeys;
+    }
+
+    /**
+     * A qualified key while the index is built.
+     */
+    private static final class Bound {
+
+        final long version;
+
+        final String key;
+
+        Bound(long version, String key) {
+            this.version = version;
+            this.key = key;
+        }
+    }
+
+    private static final char QUALIFIER = '@';
+
+    /**
+     * Builds the index of a specification, including keys only defined in
+     * its defaults.
+     *
+     * @param specification The specification
+     * @return The index
+     */
+    public static VersionIndex of(Specification specification) {
+        return of(specification.getSortedKeys());
+    }
+
+    /**
+     * Builds the index of some keys.
+     *
+     * @param keys The keys, qualified or not
+     * @return The index
+     */
+    public static VersionIndex of(String[] keys) {
+        Map<String, List<Bound>[]> bounds = new HashMap<>();
+        for (String key: keys) {
+            int at = key.lastIndexOf(QUALIFIER);
+            if (0 > at)
+                continue;
+            int start = at + 1;
+            int kind;
+            boolean inclusive = true;
+            if (key.startsWith(">=", start) || key.startsWith("<=", start)) {
+                kind = ('>' == key.charAt(start)) ? 1 : 2;
+                start += 2;
+            } else if (key.startsWith(">", start) || key.startsWith("<", start)) {
+                kind = ('>' == key.charAt(start)) ? 1 : 2;
+                inclusive = false;
+                start += 1;
+            } else {
+                kind = 0;
+                if (key.startsWith("=", start))
+                    start += 1;
+            }
+            long version;
+            try {
+                version = Version.pack(key, start, key.length());
+            } catch (IllegalArgumentException x) {
+                continue; // Not a version qualifier
+            }
+            if (1 == kind && !inclusive || 2 == kind && inclusive) {
+                if (-1L == version) { // The greatest version
+                    if (1 == kind)
+                        continue; // Nothing is greater
+                    kind = 1; // Everything is less or equal
+                    version = 0L;
+                } else
+                    ++version;
+            }
+            List<Bound>[] lists = bounds.computeIfAbsent(key.substring(0, at), name -> newLists());
+            lists[kind].add(new Bound(version, key));
+        }
+        Map<String, Ranges> ranges = new HashMap<>();
+        for (Map.Entry<String, List<Bound>[]> entry: bounds.entrySet()) {
+            List<Bound>[] lists = entry.getValue();
+            Ranges range = new Ranges();
+            range.exact = toVersions(lists[0]);
+            range.exactKeys = toKeys(lists[0]);
+            range.lower = toVersions(lists[1]);
+            range.lowerKeys = toKeys(lists[1]);
+            range.upper = toVersions(lists[2]);
+            range.upperKeys = toKeys(lists[2]);
+            ranges.put(entry.getKey(), range);
+        }
+        return new VersionIndex(ranges);
+    }
+
+    private static List<Bound>[] newLists() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Bound>[] lists = (List<Bound>[]) new List[] {
+            new ArrayList<Bound>(), new ArrayList<Bound>(), new ArrayList<Bound>() };
+        return lists;
+    }
+
+    private static long[] toVersions(List<Bound> bounds) {
+        // The keys arrive sorted, so equal bounds keep the order of their keys:
+        bounds.sort((left, right) -> Version.compare(left.version, right.version));
+        long[] versions = new long[bounds.size()];
+        for (int i = 0; i < versions.length; ++i)
+            versions[i] = bounds.get(i).version;
+        return versions;
+    }
+
+    private static String[] toKeys(List<Bound> bounds) {
+        String[] keys = new String[bounds.size()];
+        for (int i = 0; i < keys.length; ++i)
+            keys[i] = bounds.get(i).key;
+        return keys;
+    }
+
+    private final Map<String, Ranges> ranges;
+
+    private VersionIndex(Map<String, Ranges> ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * Finds the qualified key that applies to a version, without allocating.
+     *
+     * @param name The unqualified name
+     * @param version The packed version; see <code>Version#pack</code>
+     * @return The most specific matching key, or null if none matches
+     */
+    public String getKey(String name, long version) {
+        Ranges range = ranges.get(name);
+        if (null == range)
+            return null;
+        int index = search(range.exact, version);
+        if (0 < index && 0 == Version.compare(range.exact[index - 1], version))
+            return range.exactKeys[index - 1];
+        index = search(range.lower, version);
+        if (0 < index)
+            return range.lowerKeys[index - 1];
+        index = search(range.upper, version);
+        if (index < range.upper.length)
+            return range.upperKeys[index];
+        return null;
+    }
+
+    public String getKey(String name, Version version) {
+        return getKey(name, version.getPacked());
+    }
+
+    /**
+     * @param name The unqualified name
+     * @return Whether any key is qualified with a version range for the name
+     */
+    public boolean isVersioned(String name) {
+        return ranges.containsKey(name);
+    }
+
+    /**
+     * @return The number of bounds less than or equal to the version, which
+     *         is the index of the first bound greater than the version
+     */
+    private static int search(long[] bounds, long version) {
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (0 < Version.compare(bounds[middle], version))
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+}
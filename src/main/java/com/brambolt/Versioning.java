@@ -14,12 +14,29 @@ public class Versioning {
      * @return The short-form version, without periods
      */
     public static String shorten4(String version) {
-        String[] segments = version.split("\\.");
-        if (4 != segments.length)
+        // Trailing empty segments are ignored, as by String.split:
+        int end = version.length();
+        while (0 < end && '.' == version.charAt(end - 1))
+            --end;
+        int segments = (0 == end && !version.isEmpty()) ? 0 : 1;
+        int patchStart = 0;
+        for (int i = 0; i < end; ++i)
+            if ('.' == version.charAt(i)) {
+                ++segments;
+                patchStart = i + 1;
+            }
+        if (4 != segments)
             throw new IllegalArgumentException("Version does not have four segments: " + version);
-        String patchLevel = segments[3];
-        if (2 > patchLevel.length())
-            segments[3] = "0" + segments[3];
-        return segments[0] + segments[1] + segments[2] + segments[3];
+        boolean padded = 2 > end - patchStart;
+        char[] chars = new char[end - 3 + (padded ? 1 : 0)];
+        int length = 0;
+        for (int i = 0; i < end; ++i) {
+            char c = version.charAt(i);
+            if (i == patchStart && padded)
+                chars[length++] = '0';
+            if ('.' != c)
+                chars[length++] = c;
+        }
+        return new String(chars);
     }
 }
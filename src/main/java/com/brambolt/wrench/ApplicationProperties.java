@@ -1,31 +1,42 @@
 package com.brambolt.wrench;
 
+import com.brambolt.LoadOptions;
 import com.brambolt.Specification;
-import com.brambolt.util.Resources;
 
-import java.io.IOException;
+import java.util.NoSuchElementException;
 
 /**
  * Defines global application properties.
  */
 public class ApplicationProperties extends Specification {
 
-    public static ApplicationProperties create(String resourcePath) {
-        ApplicationProperties instance = new ApplicationProperties(resourcePath);
+    /**
+     * Creates application properties with the encoding, provenance and
+     * instrumentation from the load options, skipping the class path search
+     * if the resource index from the load options knows the resource is
+     * missing.
+     *
+     * @param resourcePath The resource path
+     * @param loadOptions The load options
+     * @return The application properties, empty if there is no resource
+     */
+    public static ApplicationProperties create(String resourcePath, LoadOptions loadOptions) {
+        ApplicationProperties instance = new ApplicationProperties(resourcePath, loadOptions);
+        if (instance.isMissingResource(resourcePath))
+            return instance; // Known to be missing, no need to look for it
         try {
-            instance.load(Resources.stream(resourcePath));
+            instance.loadPropertiesFromResource(resourcePath);
             instance.setDerivedProperties();
-            return instance;
-        } catch (NullPointerException x) {
+        } catch (NoSuchElementException x) {
             // The requested resource path does not correspond to any existing
             // resource; this is acceptable, some applications simply don't
-            // define any application properties; we return the empty set:
-            return instance;
-        } catch (IOException x) {
-            throw new RuntimeException(
-                String.format("Unable to read applicaton properties at %s", resourcePath),
-                x);
+            // define any application properties; we return the empty set.
         }
+        return instance;
+    }
+
+    public static ApplicationProperties create(String resourcePath) {
+        return create(resourcePath, LoadOptions.defaults());
     }
 
     /**
@@ -34,9 +45,24 @@ public class ApplicationProperties extends Specification {
     private final String resourcePath;
 
     protected ApplicationProperties(String resourcePath) {
+        this(resourcePath, null);
+    }
+
+    protected ApplicationProperties(String resourcePath, LoadOptions loadOptions) {
+        super(null, loadOptions);
         this.resourcePath = resourcePath;
     }
 
+    /**
+     * Seals these application properties for sharing.
+     *
+     * @return This instance
+     */
+    ApplicationProperties sealed() {
+        seal();
+        return this;
+    }
+
     protected String getResourcePath() {
         return resourcePath;
     }
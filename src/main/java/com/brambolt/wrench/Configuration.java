@@ -0,0 +1,48 @@
+package com.brambolt.wrench;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface as a typed view of the properties of a group.
+ *
+ * <p>Each abstract method of the interface, including the methods it
+ * inherits, is a property, named by its
+ * <code>Key</code> annotation, or by the method name, relative to the group
+ * identifier. The method returns <code>boolean</code>, <code>int</code>,
+ * <code>long</code>, <code>double</code>, <code>String</code> or
+ * <code>Duration</code>.</p>
+ *
+ * <p>The configuration processor generates a final class named after the
+ * interface with a <code>Values</code> suffix, which implements the
+ * interface with one final field per property. Its static
+ * <code>bind</code> method fills it from a specification with one lookup
+ * per configured key:</p>
+ * <pre>
+ *     &#64;Configuration(groupId = "some.example.system")
+ *     public interface ServerConfiguration {
+ *         &#64;Key("server.port") &#64;Default("8080") int port();
+ *     }
+ *
+ *     ServerConfiguration configuration = ServerConfigurationValues.bind(instanceProperties);
+ * </pre>
+ * <p>The processor is published separately, with the <code>processor</code>
+ * classifier, so that the library itself does not register an annotation
+ * processor. Add it to the annotation processor path to use it:</p>
+ * <pre>
+ *     annotationProcessor "com.brambolt.wrench:brambolt-wrench-properties:${version}:processor"
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Configuration {
+
+    /**
+     * @return The group identifier the keys are relative to
+     */
+    String groupId();
+}
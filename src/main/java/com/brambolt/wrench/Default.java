@@ -0,0 +1,23 @@
+package com.brambolt.wrench;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Provides the value of a <code>Configuration</code> property that is not
+ * defined; without it, the property is required. The value is written as
+ * in a properties file and is checked when the configuration is compiled.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Default {
+
+    /**
+     * @return The default value
+     */
+    String value();
+}
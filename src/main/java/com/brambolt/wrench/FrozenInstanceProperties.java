@@ -0,0 +1,108 @@
+package com.brambolt.wrench;
+
+import com.brambolt.FrozenSpecification;
+import com.brambolt.LoadOptions;
+import com.brambolt.util.Maps;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Instance properties restored from a snapshot, with the structured views
+ * already resolved.
+ *
+ * <p>The system and target views are built when the snapshot is read, from
+ * the flat properties and the target contexts stored in the snapshot, so
+ * the targets are not resolved again. Like the views of sealed
+ * <code>InstanceProperties</code>, they are shared by every caller and are
+ * read-only at every level.</p>
+ *
+ * @see InstanceSnapshot
+ */
+public class FrozenInstanceProperties extends FrozenSpecification {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String groupId;
+
+    private final transient Map<String, Object> system;
+
+    private final transient Map<String, Object> targets;
+
+    private final transient ResolvedTargets resolvedTargets;
+
+    /**
+     * @param values The resolved properties
+     * @param loadOptions The load options, or null
+     * @param groupId The group identifier, or null if there are no views
+     * @param contexts The flattened units of each resolved target context
+     * @throws IllegalStateException If a listed target has no context
+     */
+    FrozenInstanceProperties(Map<String, String> values, LoadOptions loadOptions, String groupId,
+                             Map<String, Map<String, String>> contexts) {
+        super(values, loadOptions);
+        this.groupId = groupId;
+        Map<String, Object> system = (null != groupId) ? InstanceProperties.toSystem(this, groupId) : null;
+        this.system = (null != system) ? system : new HashMap<>();
+        if (!this.system.containsKey("targets")) {
+            this.targets = new HashMap<>();
+            this.resolvedTargets = ResolvedTargets.NONE;
+        } else {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> targets = (Map<String, Object>) this.system.get("targets");
+            this.resolvedTargets = restoreTargets(targets, contexts).sealed();
+            targets.remove("listing");
+            this.targets = targets;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResolvedTargets restoreTargets(Map<String, Object> targets, Map<String, Map<String, String>> contexts) {
+        String[] names = ((String) targets.get("listing")).split(",");
+        Map<String, Object>[] resolved = ResolvedTargets.newContexts(names.length);
+        for (int i = 0; i < names.length; ++i) {
+            Map<String, Object> target = (Map<String, Object>) targets.get(names[i]);
+            if (null == target)
+                throw new IllegalStateException("No specification found for target " + names[i]);
+            if (target.containsKey("context")) {
+                resolved[i] = (Map<String, Object>) target.get("context"); // The context was defined already
+                continue;
+            }
+            Map<String, String> units = contexts.get(names[i]);
+            if (null == units)
+                throw new IllegalStateException("No context found for target " + names[i]);
+            Properties flat = new Properties();
+            flat.putAll(units);
+            Map<String, Object> context = new OverlayMap<>(system);
+            context.remove("targets");
+            for (Map.Entry<String, Object> unit: Maps.convert(flat).entrySet()) {
+                context.put(unit.getKey(), unit.getValue());
+                if (target.containsKey(unit.getKey()))
+                    target.put(unit.getKey(), unit.getValue());
+            }
+            target.put("context", context);
+            resolved[i] = context;
+        }
+        return new ResolvedTargets(names, resolved);
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public Map<String, Object> getSystem() {
+        return SealedMap.of(system);
+    }
+
+    public Map<String, Object> getTargets() {
+        return SealedMap.of(targets);
+    }
+
+    /**
+     * @return The target contexts in listing order
+     */
+    public ResolvedTargets resolveTargets() {
+        return resolvedTargets;
+    }
+}
@@ -1,6 +1,8 @@
 package com.brambolt.wrench;
 
+import com.brambolt.LoadOptions;
 import com.brambolt.Specification;
+import com.brambolt.ValuePool;
 
 import java.io.File;
 import java.util.HashMap;
@@ -19,12 +21,17 @@ public class InstanceProperties extends Specification {
     }
 
     public static InstanceProperties getFor(String groupId, File secretsDir) {
+        return getFor(groupId, secretsDir, LoadOptions.defaults());
+    }
+
+    public static InstanceProperties getFor(String groupId, File secretsDir, LoadOptions loadOptions) {
         String groupPath = groupId.replaceAll("\\.", "/");
         return getFor(
             groupPath + "/application.properties",
             groupPath + "/instance.properties",
             groupId,
-            secretsDir);
+            secretsDir,
+            loadOptions);
     }
 
     public static InstanceProperties getFor(
@@ -32,12 +39,26 @@ public class InstanceProperties extends Specification {
         String instancePropertiesResourcePath,
         String groupId,
         File secretsDir) {
+        return getFor(
+            applicationPropertiesResourcePath,
+            instancePropertiesResourcePath,
+            groupId,
+            secretsDir,
+            LoadOptions.defaults());
+    }
+
+    public static InstanceProperties getFor(
+        String applicationPropertiesResourcePath,
+        String instancePropertiesResourcePath,
+        String groupId,
+        File secretsDir,
+        LoadOptions loadOptions) {
         ApplicationProperties applicationProperties =
-            ApplicationProperties.create(applicationPropertiesResourcePath);
+            ApplicationProperties.create(applicationPropertiesResourcePath, loadOptions);
         return new InstanceProperties(
             applicationProperties,
             instancePropertiesResourcePath,
-            null, secretsDir, groupId);
+            null, secretsDir, groupId, loadOptions);
     }
 
     public static Properties getForPackage(String packageName, File secretsDir) {
@@ -47,15 +68,44 @@ public class InstanceProperties extends Specification {
     }
 
     public static Properties getForPackageAndApplication(String packageName, Properties defaults, File secretsDir) {
+        return getForPackageAndApplication(packageName, defaults, secretsDir, null);
+    }
+
+    public static Properties getForPackageAndApplication(
+        String packageName, Properties defaults, File secretsDir, LoadOptions loadOptions) {
         // Derive the properties resource path:
         String resourcePath = packageName.replaceAll("\\.", "/") + "/instance.properties";
-        return new InstanceProperties(defaults, resourcePath, null, secretsDir, packageName);
+        return new InstanceProperties(defaults, resourcePath, null, secretsDir, packageName, loadOptions);
+    }
+
+    /**
+     * Locates the secrets file for a directory; the file is looked for in
+     * the directory and then in each parent directory in turn.
+     *
+     * @param secretsDir The directory to start looking in
+     * @return The secrets file, or null if there is none
+     */
+    public static File findSecretsFile(File secretsDir) {
+        File dir = secretsDir;
+        while (null != dir) {
+            File secretsFile = new File(dir, SECRETS_PROPERTIES_RESOURCE_NAME);
+            if (secretsFile.exists())
+                return secretsFile;
+            File parentDir = dir.getParentFile();
+            dir = (null != parentDir && !parentDir.equals(dir)) ? parentDir : null;
+        }
+        return null;
     }
 
     private final String resourcePath;
 
     private final String resourcePathTemplate;
 
+    /**
+     * The secrets file that was loaded, or null if none was found.
+     */
+    private File secretsFile;
+
     /**
      * This is the group prefix for the client properties.
      *
@@ -65,18 +115,41 @@ public class InstanceProperties extends Specification {
 
     private final String groupPath;
 
-    private final Map<String, Object> cache;
+    /**
+     * Guards the lazy preparation of the structured views.
+     */
+    private final Object structureLock = new Object();
+
+    /**
+     * The structured view of the group properties, prepared on first access.
+     */
+    private volatile Map<String, Object> system;
+
+    /**
+     * The prepared targets, set last when the structured views are prepared.
+     */
+    private volatile Map<String, Object> targets;
 
-    private final Map<String, Object> system;
+    /**
+     * The target contexts in listing order, prepared with the targets.
+     */
+    private ResolvedTargets resolvedTargets;
 
-    private final Map<String, Object> targets;
+    /**
+     * The read-only structured views, created on first access once sealed.
+     */
+    private volatile SealedViews sealedViews;
 
     protected InstanceProperties(Properties defaults, String resourcePath, String resourcePathTemplate, File secretsDir) {
         this(defaults, resourcePath, resourcePathTemplate, secretsDir, null);
     }
 
     protected InstanceProperties(Properties defaults, String resourcePath, String resourcePathTemplate, File secretsDir, String groupId) {
-        super(defaults);
+        this(defaults, resourcePath, resourcePathTemplate, secretsDir, groupId, null);
+    }
+
+    protected InstanceProperties(Properties defaults, String resourcePath, String resourcePathTemplate, File secretsDir, String groupId, LoadOptions loadOptions) {
+        super(defaults, loadOptions);
         this.resourcePath = resourcePath;
         this.resourcePathTemplate = resourcePathTemplate;
         this.groupId = groupId;
@@ -88,9 +161,21 @@ public class InstanceProperties extends Specification {
         loadEnvironmentProperties();
         loadTargetProperties();
         loadSecrets(secretsDir);
-        cache = convertToMap();
-        system = prepareSystem();
-        targets = prepareTargets();
+        // The structured views are prepared on first access; callers that
+        // only read flat keys never pay for them.
+    }
+
+    /**
+     * Seals these instance properties, and the application properties they
+     * default to, for sharing.
+     *
+     * @return This instance
+     */
+    InstanceProperties sealed() {
+        if (getDefaults() instanceof ApplicationProperties)
+            ((ApplicationProperties) getDefaults()).sealed();
+        seal();
+        return this;
     }
 
     public String getResourcePath() {
@@ -159,8 +244,11 @@ public class InstanceProperties extends Specification {
     }
 
     private void loadClientProperties() {
+        String resourcePath = getClientPropertiesResourcePath();
+        if (isMissingResource(resourcePath))
+            return; // Known to be missing, no need to look for it
         try {
-            loadPropertiesFromResource(getClientPropertiesResourcePath());
+            loadPropertiesFromResource(resourcePath);
         } catch (NoSuchElementException ignored) {
             // Don't attempt to load from com.brambolt.wrench...
             // loadPropertiesFromResource(getDefaultClientPropertiesResourcePath());
@@ -192,22 +280,24 @@ public class InstanceProperties extends Specification {
     }
 
     private void loadTargetProperties() {
+        String resourcePath = getTargetPropertiesResourcePath();
+        if (isMissingResource(resourcePath))
+            return; // Known to be missing, no targets to load
         try {
-            loadPropertiesFromResource(getTargetPropertiesResourcePath());
+            loadPropertiesFromResource(resourcePath);
         } catch (NoSuchElementException ignored) {
             // No resource found, no targets to load - ignore
         }
     }
 
+    public File getSecretsFile() {
+        return secretsFile;
+    }
+
     private void loadSecrets(File secretsDir) {
-        File secretsFile = new File(secretsDir, SECRETS_PROPERTIES_RESOURCE_NAME);
-        if (secretsFile.exists())
+        secretsFile = findSecretsFile(secretsDir);
+        if (null != secretsFile)
             loadPropertiesFromFile(secretsFile);
-        else {
-            File parentDir = secretsDir.getParentFile();
-            if (null != parentDir && !parentDir.equals(secretsDir))
-                loadSecrets(parentDir);
-        }
         // We can't throw an exception if the secrets file is not found,
         // because the client properties are accessed both at deployment
         // time (when a secrets file should be present) and build time
@@ -215,94 +305,142 @@ public class InstanceProperties extends Specification {
         // out of source control).
     }
 
+    /**
+     * Provides the structured view of the group properties. Once these
+     * instance properties are sealed, the view and every map nested in it
+     * are read-only.
+     *
+     * @return The system map
+     */
     public Map<String, Object> getSystem() {
-        return system;
+        prepareStructure();
+        return isSealed() ? sealedViews().system : system;
     }
 
+    /**
+     * Provides the prepared targets, read-only at every level once these
+     * instance properties are sealed.
+     *
+     * @return The targets by name
+     */
     public Map<String, Object> getTargets() {
-        return targets;
+        prepareStructure();
+        return isSealed() ? sealedViews().targets : targets;
     }
 
-    private Map<String, Object> prepareSystem() {
-        String[] segments = groupId.split("\\.");
-        Map<String, Object> result = cache;
-        for (String segment: segments)
-            //noinspection unchecked
-            result = (Map<String, Object>) result.get(segment);
-        return result;
+    /**
+     * Provides the target contexts in listing order, for callers that
+     * process every target, such as staging builds. The targets are resolved
+     * together with the structured views, in one batch, concurrently when
+     * the load options have an executor.
+     *
+     * @return The resolved targets
+     */
+    public ResolvedTargets resolveTargets() {
+        prepareStructure();
+        return isSealed() ? sealedViews().resolvedTargets : resolvedTargets;
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> prepareTargets() {
-        Map<String, Object> system = getSystem();
-        if (!system.containsKey("targets"))
-            return new HashMap<>(); // No targets defined, nothing to do
-        Map<String, Object> targets = (Map<String, Object>) getSystem().get("targets");
-        String[] names = ((String) targets.get("listing")).split(",");
-        for (String name: names)
-            prepareTargetContext(name, (Map<String, Object>) targets.get(name));
-        targets.remove("listing");
-        return targets;
+    /**
+     * The structured views of sealed instance properties, shared by every
+     * caller.
+     */
+    private static final class SealedViews {
+
+        final Map<String, Object> system;
+
+        final Map<String, Object> targets;
+
+        final ResolvedTargets resolvedTargets;
+
+        SealedViews(Map<String, Object> system, Map<String, Object> targets, ResolvedTargets resolvedTargets) {
+            this.system = SealedMap.of(system);
+            this.targets = SealedMap.of(targets);
+            this.resolvedTargets = resolvedTargets.sealed();
+        }
     }
 
-    private void prepareTargetContext(String targetName, Map<String, Object> target) {
-        if (null == target)
-            throw new IllegalStateException("No specification found for target " + targetName);
-        if (target.containsKey("context"))
-            return; // Nothing to do, the context was defined already
-        Map<String, Object> context = new HashMap<>(system);
-        context.remove("targets"); // Avoid stack overflow in toString(), etc.
-        prepareTargetUnits(targetName, target, context);
-        target.put("context", context);
+    private SealedViews sealedViews() {
+        SealedViews views = sealedViews;
+        if (null != views)
+            return views;
+        synchronized (structureLock) {
+            if (null == sealedViews)
+                sealedViews = new SealedViews(system, targets, resolvedTargets);
+            return sealedViews;
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private void prepareTargetUnits(String targetName, Map<String, Object> target, Map<String, Object> context) {
-        String[] unitTypes = new String[] { "environment", "host" };
-        if (system.containsKey("units")) {
-            Map<String, Object> units = (Map<String, Object>) system.get("units");
-            unitTypes = units.get("listing").toString().split(",");
+    /**
+     * Prepares the system and target views, once, on first access.
+     *
+     * <p>Only the properties under the group identifier are converted to the
+     * nested form, and the targets are prepared along with the system view
+     * so that both always reflect the same state.</p>
+     */
+    private void prepareStructure() {
+        if (null != targets)
+            return;
+        synchronized (structureLock) {
+            if (null != targets)
+                return;
+            system = prepareSystem();
+            targets = prepareTargets();
         }
-        for (String unitType: unitTypes)
-            prepareTargetUnitType(targetName, unitType, target, context);
     }
 
-    private void prepareTargetUnitType(String targetName, String unitType, Map<String, Object> target, Map<String, Object> context) {
-        if (target.containsKey(unitType))
-            prepareTargetUnit(targetName, unitType, target, context);
-        else if (target.containsKey(unitType + "s"))
-            prepareTargetUnits(targetName, unitType, target, context);
+    private Map<String, Object> prepareSystem() {
+        Map<String, Object> result = toSystem(this, groupId);
+        ValuePool valuePool = getLoadOptions().getValuePool();
+        if (null != result && null != valuePool)
+            poolUnits(result, valuePool);
+        return result;
     }
 
+    /**
+     * Converts the properties under a group identifier to the nested form.
+     *
+     * @param properties The properties
+     * @param groupId The group identifier
+     * @return The system map, or null if there are no properties for the group
+     */
+    static Map<String, Object> toSystem(Specification properties, String groupId) {
+        String[] segments = groupId.split("\\.");
+        Map<String, Object> result = properties.convertToMap(properties.getKeys(groupId));
+        for (String segment: segments) {
+            if (null == result)
+                break;
+            //noinspection unchecked
+            result = (Map<String, Object>) result.get(segment);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces each unit map of the system with the pooled, unmodifiable
+     * equal map, so instances with the same units share them.
+     */
     @SuppressWarnings("unchecked")
-    private void prepareTargetUnit(String targetName, String unitType, Map<String, Object> target, Map<String, Object> contextValues) {
-        if (!target.containsKey(unitType))
-            return; // Nothing to do
-        Map<String, Object> targetUnit = (Map<String, Object>) target.get(unitType);
-        String unitName = (String) targetUnit.get("name");
-        Map<String, Object> units = (Map<String, Object>) system.get(unitType + "s");
-        Map<String, Object> unit = (Map<String, Object>) units.get(unitName);
-        targetUnit.putAll(unit);
-        contextValues.put(unitType, targetUnit);
+    private static void poolUnits(Map<String, Object> system, ValuePool valuePool) {
+        for (String unitType: TargetResolver.getUnitTypes(system)) {
+            Object units = system.get(unitType + "s");
+            if (units instanceof Map)
+                for (Map.Entry<String, Object> entry: ((Map<String, Object>) units).entrySet())
+                    if (entry.getValue() instanceof Map)
+                        entry.setValue(valuePool.intern((Map<String, Object>) entry.getValue()));
+        }
     }
 
     @SuppressWarnings("unchecked")
-    private void prepareTargetUnits(String targetName, String unitType, Map<String, Object> target, Map<String, Object> contextValues) {
-        if (!target.containsKey(unitType + "s"))
-            return; // Nothing to do
-        Map<String, Object> units = (Map<String, Object>) system.get(unitType + "s");
-        Map<String, Object> targetUnits = (Map<String, Object>) target.get(unitType + "s");
-        String[] unitNames = targetUnits.get("listing").toString().split(",");
-        for (int i = 0; i < unitNames.length; ++i) {
-            String unitName = unitNames[i];
-            Map<String, Object> unit = (Map<String, Object>) units.get(unitName);
-            String key = unitType + i;
-            Map<String, Object> targetUnit = contextValues.containsKey(key)
-                ? (Map<String, Object>) contextValues.get(key)
-                : new HashMap<>();
-            targetUnit.putAll(unit);
-            contextValues.put(key, targetUnit);
+    private Map<String, Object> prepareTargets() {
+        if (!system.containsKey("targets")) {
+            resolvedTargets = ResolvedTargets.NONE;
+            return new HashMap<>(); // No targets defined, nothing to do
         }
+        Map<String, Object> targets = (Map<String, Object>) system.get("targets");
+        resolvedTargets = new TargetResolver(system).resolve(targets, getLoadOptions().getExecutor());
+        targets.remove("listing");
+        return targets;
     }
 }
 
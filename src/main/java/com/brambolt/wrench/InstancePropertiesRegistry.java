@@ -0,0 +1,229 @@
+package com.brambolt.wrench;
+
+import com.brambolt.LoadOptions;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Shares loaded instance properties between callers in the same process,
+ * for example the projects of a multi-project Gradle build that all call
+ * <code>getFor</code> for the same system at configuration time.
+ *
+ * <p>Instance properties are cached by group identifier, resource paths,
+ * load options and the secrets file that applies, identified by its path,
+ * modification time and length. A change to the secrets file, or a secrets
+ * file appearing or disappearing, gives a new key and the properties are
+ * loaded again; classpath resources are assumed not to change while the
+ * process runs.</p>
+ *
+ * <p>Each set of properties is loaded once, even when several threads ask
+ * for it at the same time: the first caller loads while the others wait for
+ * the same future. A failed load is not cached. The cached instances are
+ * sealed, so none of the callers can modify the properties the others see.
+ * The least recently used entries are evicted once the capacity is
+ * reached.</p>
+ */
+public class InstancePropertiesRegistry {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private static final InstancePropertiesRegistry SHARED = new InstancePropertiesRegistry(DEFAULT_CAPACITY);
+
+    /**
+     * @return The process-wide registry
+     */
+    public static InstancePropertiesRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Identifies the inputs of a set of instance properties.
+     */
+    private static final class Key {
+
+        final String applicationPropertiesResourcePath;
+
+        final String instancePropertiesResourcePath;
+
+        final String groupId;
+
+        /**
+         * The absolute secrets directory, or null to load without secrets.
+         */
+        final File secretsDir;
+
+        final LoadOptions loadOptions;
+
+        final String secretsPath;
+
+        final long secretsLastModified;
+
+        final long secretsLength;
+
+        Key(String applicationPropertiesResourcePath, String instancePropertiesResourcePath,
+            String groupId, File secretsDir, LoadOptions loadOptions) {
+            this.applicationPropertiesResourcePath = applicationPropertiesResourcePath;
+            this.instancePropertiesResourcePath = instancePropertiesResourcePath;
+            this.groupId = groupId;
+            this.secretsDir = (null != secretsDir) ? secretsDir.getAbsoluteFile() : null;
+            this.loadOptions = loadOptions;
+            File secretsFile = InstanceProperties.findSecretsFile(this.secretsDir);
+            this.secretsPath = (null != secretsFile) ? secretsFile.getAbsolutePath() : null;
+            this.secretsLastModified = (null != secretsFile) ? secretsFile.lastModified() : 0L;
+            this.secretsLength = (null != secretsFile) ? secretsFile.length() : 0L;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+            if (!(other instanceof Key))
+                return false;
+            Key key = (Key) other;
+            return applicationPropertiesResourcePath.equals(key.applicationPropertiesResourcePath)
+                && instancePropertiesResourcePath.equals(key.instancePropertiesResourcePath)
+                && groupId.equals(key.groupId)
+                && Objects.equals(secretsDir, key.secretsDir)
+                && Objects.equals(loadOptions, key.loadOptions)
+                && Objects.equals(secretsPath, key.secretsPath)
+                && secretsLastModified == key.secretsLastModified
+                && secretsLength == key.secretsLength;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                applicationPropertiesResourcePath, instancePropertiesResourcePath, groupId, secretsDir,
+                loadOptions, secretsPath, secretsLastModified, secretsLength);
+        }
+    }
+
+    private final int capacity;
+
+    /**
+     * The cached loads, least recently used first; guarded by itself.
+     */
+    private final LinkedHashMap<Key, CompletableFuture<InstanceProperties>> entries;
+
+    public InstancePropertiesRegistry(int capacity) {
+        if (1 > capacity)
+            throw new IllegalArgumentException("Registry capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, CompletableFuture<InstanceProperties>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<InstanceProperties>> eldest) {
+                return size() > InstancePropertiesRegistry.this.capacity;
+            }
+        };
+    }
+
+    public InstanceProperties getFor(String groupId, File secretsDir) {
+        return getFor(groupId, secretsDir, LoadOptions.defaults());
+    }
+
+    public InstanceProperties getFor(String groupId, File secretsDir, LoadOptions loadOptions) {
+        String groupPath = groupId.replaceAll("\\.", "/");
+        return getFor(
+            groupPath + "/application.properties",
+            groupPath + "/instance.properties",
+            groupId,
+            secretsDir,
+            loadOptions);
+    }
+
+    /**
+     * Provides shared instance properties, loading them if they are not
+     * cached or if the secrets file changed since they were loaded.
+     *
+     * @param applicationPropertiesResourcePath The application properties resource path
+     * @param instancePropertiesResourcePath The instance properties resource path
+     * @param groupId The group identifier
+     * @param secretsDir The directory to look for the secrets file in, or null for none
+     * @param loadOptions The load options, compared by value
+     * @return The sealed instance properties
+     */
+    public InstanceProperties getFor(
+        String applicationPropertiesResourcePath,
+        String instancePropertiesResourcePath,
+        String groupId,
+        File secretsDir,
+        LoadOptions loadOptions) {
+        Key key = new Key(
+            applicationPropertiesResourcePath, instancePropertiesResourcePath, groupId, secretsDir, loadOptions);
+        CompletableFuture<InstanceProperties> future;
+        boolean loading = false;
+        synchronized (entries) {
+            future = entries.get(key);
+            if (null == future) {
+                future = new CompletableFuture<>();
+                entries.put(key, future);
+                removeStale(key);
+                loading = true;
+            }
+        }
+        if (loading)
+            try {
+                future.complete(InstanceProperties.getFor(
+                    applicationPropertiesResourcePath,
+                    instancePropertiesResourcePath,
+                    groupId,
+                    secretsDir,
+                    loadOptions).sealed());
+            } catch (RuntimeException | Error x) {
+                synchronized (entries) {
+                    entries.remove(key, future);
+                }
+                future.completeExceptionally(x);
+            }
+        try {
+            return future.join();
+        } catch (CompletionException x) {
+            if (x.getCause() instanceof RuntimeException)
+                throw (RuntimeException) x.getCause();
+            throw x;
+        }
+    }
+
+    /**
+     * Drops the entries for the same inputs with an older secrets file,
+     * which can't be returned again.
+     */
+    private void removeStale(Key key) {
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            Key other = keys.next();
+            if (other != key
+                && other.applicationPropertiesResourcePath.equals(key.applicationPropertiesResourcePath)
+                && other.instancePropertiesResourcePath.equals(key.instancePropertiesResourcePath)
+                && other.groupId.equals(key.groupId)
+                && Objects.equals(other.secretsDir, key.secretsDir)
+                && Objects.equals(other.loadOptions, key.loadOptions))
+                keys.remove();
+        }
+    }
+
+    /**
+     * @return The number of cached entries, including loads in progress
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Drops all cached entries. Instances already handed out stay valid.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.brambolt.wrench;
+
+import com.brambolt.BinarySnapshot;
+import com.brambolt.LoadOptions;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes instance properties to a binary snapshot at build time, and reads
+ * them back at startup with the target contexts already resolved.
+ *
+ * <p>Besides the resolved properties, the snapshot holds the group
+ * identifier and, for each target whose context was resolved rather than
+ * defined in the properties, the units of its context in flattened form.
+ * Reading the snapshot restores the system and target views from those
+ * without resolving the targets again; see
+ * <code>FrozenInstanceProperties</code>.</p>
+ *
+ * <p>Snapshots are written from a build script with the main method, for
+ * example with a Gradle task like:</p>
+ * <pre>
+ *     task instanceSnapshot(type: JavaExec) {
+ *       classpath = sourceSets.main.runtimeClasspath
+ *       main = 'com.brambolt.wrench.InstanceSnapshot'
+ *       args 'com.example.system', "$buildDir/snapshots/instance.snapshot"
+ *     }
+ * </pre>
+ *
+ * @see BinarySnapshot
+ */
+public final class InstanceSnapshot {
+
+    /**
+     * The table with the group identifier.
+     */
+    static final String INSTANCE = "instance";
+
+    static final String GROUP_ID = "groupId";
+
+    /**
+     * Prefixes the target name in the names of the context tables.
+     */
+    static final String CONTEXT = "context:";
+
+    /**
+     * Writes the snapshot of instance properties to a file:
+     * <pre>
+     *     InstanceSnapshot &lt;group-id&gt; &lt;snapshot-file&gt; [&lt;secrets-dir&gt;]
+     * </pre>
+     * <p>Secrets are only included when a secrets directory is given.</p>
+     *
+     * @param args The group identifier, the snapshot file and optionally the
+     *             secrets directory
+     */
+    public static void main(String[] args) {
+        if (2 > args.length || 3 < args.length) {
+            System.err.println("Usage: InstanceSnapshot <group-id> <snapshot-file> [<secrets-dir>]");
+            System.exit(2);
+        }
+        File file = new File(args[1]).getAbsoluteFile();
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IllegalStateException("Unable to create directory: " + dir.getAbsolutePath());
+        write(InstanceProperties.getFor(args[0], (3 == args.length) ? new File(args[2]) : null), file);
+    }
+
+    /**
+     * Writes instance properties, with their resolved target contexts, to a
+     * snapshot file.
+     *
+     * @param instance The instance properties
+     * @param file The file to write to
+     * @throws IllegalStateException If the file can't be written
+     */
+    public static void write(InstanceProperties instance, File file) {
+        Map<String, Map<String, String>> tables = new LinkedHashMap<>();
+        Map<String, String> values = new HashMap<>();
+        for (String key: instance.stringPropertyNames())
+            values.put(key, instance.getProperty(key));
+        tables.put(BinarySnapshot.PROPERTIES, values);
+        if (null != instance.getGroupId()) {
+            tables.put(INSTANCE, Collections.singletonMap(GROUP_ID, instance.getGroupId()));
+            Map<String, Object> system = SealedMap.unwrap(instance.getSystem());
+            instance.resolveTargets().forEach((name, sealed) -> {
+                Map<String, Object> context = SealedMap.unwrap(sealed);
+                if (context instanceof OverlayMap) // Not defined in the properties
+                    tables.put(CONTEXT + name, flattenUnits(system, context));
+            });
+        }
+        BinarySnapshot.writeTables(tables, file);
+    }
+
+    /**
+     * Reads instance properties from a snapshot file.
+     *
+     * @param file The snapshot file
+     * @return The frozen instance properties
+     * @throws IllegalStateException If the file can't be read or is not a valid snapshot
+     */
+    public static FrozenInstanceProperties read(File file) {
+        return read(file, null);
+    }
+
+    /**
+     * Reads instance properties from a snapshot file.
+     *
+     * @param file The snapshot file
+     * @param loadOptions The options to carry over, for instrumentation, or null
+     * @return The frozen instance properties
+     * @throws IllegalStateException If the file can't be read or is not a valid snapshot
+     */
+    public static FrozenInstanceProperties read(File file, LoadOptions loadOptions) {
+        Map<String, Map<String, String>> tables = BinarySnapshot.readTables(file);
+        Map<String, String> instance = tables.get(INSTANCE);
+        Map<String, Map<String, String>> contexts = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> table: tables.entrySet())
+            if (table.getKey().startsWith(CONTEXT))
+                contexts.put(table.getKey().substring(CONTEXT.length()), table.getValue());
+        try {
+            return new FrozenInstanceProperties(tables.get(BinarySnapshot.PROPERTIES), loadOptions,
+                (null != instance) ? instance.get(GROUP_ID) : null, contexts);
+        } catch (IllegalStateException x) {
+            throw new IllegalStateException("Corrupt snapshot: " + file.getAbsolutePath(), x);
+        }
+    }
+
+    /**
+     * Flattens the units the resolver added to a context, which are the
+     * entries that are not shared with the system map.
+     */
+    private static Map<String, String> flattenUnits(Map<String, Object> system, Map<String, Object> context) {
+        Map<String, String> units = new HashMap<>();
+        for (Map.Entry<String, Object> entry: context.entrySet())
+            if (system.get(entry.getKey()) != entry.getValue())
+                flatten(entry.getKey(), entry.getValue(), units);
+        return units;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(String key, Object value, Map<String, String> flat) {
+        if (value instanceof Map)
+            for (Map.Entry<String, Object> entry: ((Map<String, Object>) value).entrySet())
+                flatten(key + "." + entry.getKey(), entry.getValue(), flat);
+        else if (null != value)
+            flat.put(key, value.toString());
+    }
+
+    private InstanceSnapshot() {}
+}
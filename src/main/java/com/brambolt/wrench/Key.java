@@ -0,0 +1,22 @@
+package com.brambolt.wrench;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the property of a <code>Configuration</code> method, relative to
+ * the group identifier; without it, the method name is the key.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Key {
+
+    /**
+     * @return The key, relative to the group identifier
+     */
+    String value();
+}
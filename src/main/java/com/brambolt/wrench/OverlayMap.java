@@ -0,0 +1,147 @@
+package com.brambolt.wrench;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map that shares a base map and records only its own changes.
+ *
+ * <p>Reads fall through to the base map unless the key was put or removed
+ * in the overlay. Writes never touch the base map, so any number of
+ * overlays can share the same base; each one costs only its own deltas.
+ * This is used for the target contexts, which all share the system map and
+ * differ only in their environment and host entries.</p>
+ *
+ * <p>The base map must not be modified while overlays are in use. The
+ * entry set iterator does not support removal.</p>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class OverlayMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, V> base;
+
+    private final Map<K, V> overrides = new HashMap<>();
+
+    /**
+     * Base keys that were removed in the overlay.
+     */
+    private final Set<Object> removed = new HashSet<>();
+
+    public OverlayMap(Map<K, V> base) {
+        this.base = base;
+    }
+
+    /**
+     * @return The number of entries held by the overlay itself
+     */
+    public int getDeltaSize() {
+        return overrides.size() + removed.size();
+    }
+
+    @Override
+    public V get(Object key) {
+        if (overrides.containsKey(key))
+            return overrides.get(key);
+        return removed.contains(key) ? null : base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overrides.containsKey(key) || (!removed.contains(key) && base.containsKey(key));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        V previous = get(key);
+        overrides.put(key, value);
+        removed.remove(key);
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        V previous = get(key);
+        overrides.remove(key);
+        if (base.containsKey(key))
+            removed.add(key);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        overrides.clear();
+        removed.addAll(base.keySet());
+    }
+
+    @Override
+    public int size() {
+        int size = overrides.size();
+        for (K key: base.keySet())
+            if (!overrides.containsKey(key) && !removed.contains(key))
+                ++size;
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return OverlayMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates the overrides first and then the visible base entries.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+        private final Iterator<Entry<K, V>> overridden = overrides.entrySet().iterator();
+
+        private final Iterator<Entry<K, V>> inherited = base.entrySet().iterator();
+
+        private Entry<K, V> next;
+
+        @Override
+        public boolean hasNext() {
+            if (null != next)
+                return true;
+            if (overridden.hasNext()) {
+                next = overridden.next();
+                return true;
+            }
+            while (inherited.hasNext()) {
+                Entry<K, V> entry = inherited.next();
+                if (!overrides.containsKey(entry.getKey()) && !removed.contains(entry.getKey())) {
+                    next = new SimpleImmutableEntry<>(entry);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Entry<K, V> result = next;
+            next = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.brambolt.wrench;
+
+import com.brambolt.ChangeSubscriptions;
+import com.brambolt.FrozenSpecification;
+import com.brambolt.Instrumentation;
+import com.brambolt.Interpolation;
+import com.brambolt.Layer;
+import com.brambolt.LoadOptions;
+import com.brambolt.Origin;
+import com.brambolt.PropertyHandle;
+import com.brambolt.Specification;
+import com.brambolt.PropertyListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instance properties that pick up changes to their file-backed layers.
+ *
+ * <p>The instance properties are loaded once, with layers recorded. After
+ * that, <code>#reload</code> checks the modification time and length of
+ * each file-backed layer (the secrets file) and re-reads only the layers
+ * that changed. Only the keys defined by the old or new version of a
+ * changed layer are resolved again, and the result is published as a new
+ * frozen snapshot with a single volatile write. Readers always see either
+ * the previous or the next snapshot, never a partial merge, and never
+ * block.</p>
+ *
+ * <p>The secrets file is looked for again on each reload, so a secrets
+ * file that appears nearer to the secrets directory replaces the one that
+ * was loaded, and a secrets file that is removed falls back to the next
+ * one up the directory tree, if any.</p>
+ *
+ * <p>Classpath resources are not reloaded. A change to a listing (for
+ * example a secrets file that adds a host) is applied as a value change
+ * only; the newly listed resources are not loaded until the instance
+ * properties are created again. The structured views of
+ * <code>InstanceProperties</code> are likewise not maintained across
+ * reloads; use <code>#getInstanceProperties</code> for the initial state
+ * and <code>#current</code> for the latest flat values.</p>
+ *
+ * <p>When the load options track provenance, each snapshot records the
+ * origins of its values, so <code>current().getOrigin(key)</code> names
+ * the file and line a reloaded value came from.</p>
+ */
+public class ReloadableInstanceProperties {
+
+    public static ReloadableInstanceProperties getFor(String groupId, File secretsDir) {
+        return getFor(groupId, secretsDir, LoadOptions.defaults());
+    }
+
+    public static ReloadableInstanceProperties getFor(String groupId, File secretsDir, LoadOptions loadOptions) {
+        return new ReloadableInstanceProperties(
+            InstanceProperties.getFor(groupId, secretsDir, loadOptions.withRecordingLayers(true)),
+            secretsDir);
+    }
+
+    /**
+     * The layers and the snapshot resolved from them, published together.
+     */
+    private static class State {
+
+        final List<Layer> layers;
+
+        final FrozenSpecification snapshot;
+
+        /**
+         * The interpolation of the snapshot, or null until first used.
+         */
+        volatile Interpolation interpolation;
+
+        State(List<Layer> layers, FrozenSpecification snapshot, Interpolation interpolation) {
+            this.layers = layers;
+            this.snapshot = snapshot;
+            this.interpolation = interpolation;
+        }
+
+        Interpolation interpolation() {
+            Interpolation result = interpolation;
+            if (null == result) {
+                result = snapshot.interpolation();
+                interpolation = result;
+            }
+            return result;
+        }
+    }
+
+    private final InstanceProperties instanceProperties;
+
+    private final Properties defaults;
+
+    /**
+     * The directory to look for the secrets file from, or null.
+     */
+    private final File secretsDir;
+
+    private volatile State state;
+
+    private final ChangeSubscriptions subscriptions = new ChangeSubscriptions();
+
+    private long reloads;
+
+    private long failures;
+
+    private RuntimeException lastFailure;
+
+    protected ReloadableInstanceProperties(InstanceProperties instanceProperties, File secretsDir) {
+        this.instanceProperties = instanceProperties;
+        this.defaults = instanceProperties.getDefaults();
+        this.secretsDir = secretsDir;
+        // The secrets layer is loaded last, so it is always the last layer:
+        List<Layer> layers = new ArrayList<>(instanceProperties.getLayers());
+        if (null == instanceProperties.getSecretsFile())
+            // Watch for a secrets file to appear in the secrets directory:
+            layers.add(Layer.missing(new File(secretsDir, InstanceProperties.SECRETS_PROPERTIES_RESOURCE_NAME)));
+        this.state = new State(layers, instanceProperties.freeze(), null);
+    }
+
+    /**
+     * @return The instance properties as initially loaded
+     */
+    public InstanceProperties getInstanceProperties() {
+        return instanceProperties;
+    }
+
+    /**
+     * @return The latest published snapshot
+     */
+    public FrozenSpecification current() {
+        return state.snapshot;
+    }
+
+    public String getProperty(String name) {
+        return state.snapshot.getProperty(name);
+    }
+
+    public String getProperty(String name, String defaultValue) {
+        return state.snapshot.getProperty(name, defaultValue);
+    }
+
+    /**
+     * Provides a value from the latest snapshot with its <code>${key}</code>
+     * references resolved. After a reload, only the changed values and the
+     * values that reference them are resolved again.
+     *
+     * @param name The property name
+     * @return The interpolated value, or null if there is no such property
+     */
+    public String getInterpolatedProperty(String name) {
+        return state.interpolation().get(name);
+    }
+
+    /**
+     * Creates a handle that always reads from the latest snapshot.
+     *
+     * @param name The property name
+     * @param type The property value type
+     * @param <T> The property value type
+     * @return A handle for the property
+     */
+    public <T> PropertyHandle<T> handle(String name, Class<T> type) {
+        return new PropertyHandle<>(this::current, name, type);
+    }
+
+    /**
+     * Subscribes to the changes of the keys under a prefix, for example
+     * everything under <code>groupId + ".hosts"</code>. The listener is
+     * notified once per reload that changes any of the keys, with all of
+     * them, on the shared notification thread.
+     *
+     * @param prefix The prefix, matched by whole segments
+     * @param listener The listener
+     * @return The subscription, which can be cancelled
+     * @see ChangeSubscriptions
+     */
+    public ChangeSubscriptions.Subscription subscribe(String prefix, PropertyListener listener) {
+        return subscriptions.subscribe(prefix, listener);
+    }
+
+    public ChangeSubscriptions.Subscription subscribe(String prefix, PropertyListener listener, Executor executor) {
+        return subscriptions.subscribe(prefix, listener, executor);
+    }
+
+    /**
+     * Subscribes to the changes of one key.
+     *
+     * @param key The key
+     * @param listener The listener
+     * @return The subscription, which can be cancelled
+     */
+    public ChangeSubscriptions.Subscription subscribeKey(String key, PropertyListener listener) {
+        return subscriptions.subscribeKey(key, listener);
+    }
+
+    public ChangeSubscriptions.Subscription subscribeKey(String key, PropertyListener listener, Executor executor) {
+        return subscriptions.subscribeKey(key, listener, executor);
+    }
+
+    /**
+     * @return The number of reloads that published a new snapshot
+     */
+    public synchronized long getReloads() {
+        return reloads;
+    }
+
+    /**
+     * @return The number of scheduled reloads that failed
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The failure of the last scheduled reload that failed, or null
+     */
+    public synchronized RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Re-reads the file-backed layers that changed and publishes a new
+     * snapshot if any did. If a layer can't be read, nothing is published
+     * and the same layers are read again on the next reload.
+     *
+     * @return The keys whose values changed, empty if nothing changed
+     * @throws RuntimeException If a changed layer can't be read or parsed
+     */
+    public synchronized Set<String> reload() {
+        long start = System.nanoTime();
+        State previous = state;
+        List<Layer> layers = new ArrayList<>(previous.layers);
+        Set<String> affected = new HashSet<>();
+        relocateSecrets(layers, affected);
+        for (int i = 0; i < layers.size(); ++i) {
+            Layer layer = layers.get(i);
+            if (!layer.isModified())
+                continue;
+            Layer reloaded = layer.reload(instanceProperties.getLoadOptions());
+            affected.addAll(layer.getValues().stringPropertyNames());
+            affected.addAll(reloaded.getValues().stringPropertyNames());
+            layers.set(i, reloaded);
+        }
+        if (affected.isEmpty())
+            return Collections.emptySet();
+        Map<String, String> values = new HashMap<>(previous.snapshot.getValues());
+        Set<String> changed = new HashSet<>();
+        for (String key: affected) {
+            String value = resolve(layers, key);
+            String old = null != value ? values.put(key, value) : values.remove(key);
+            if (null == value ? null != old : !value.equals(old))
+                changed.add(key);
+        }
+        LoadOptions loadOptions = instanceProperties.getLoadOptions();
+        Interpolation interpolation = previous.interpolation;
+        if (null != interpolation && !changed.isEmpty())
+            try {
+                interpolation = interpolation.update(values, changed);
+            } catch (IllegalStateException x) {
+                // A cycle: publish the values anyway, and report the cycle
+                // when the interpolation is compiled again on next use:
+                interpolation = null;
+            }
+        state = new State(
+            Collections.unmodifiableList(layers),
+            changed.isEmpty() ? previous.snapshot : freeze(values, loadOptions, previous.snapshot, layers, affected),
+            interpolation);
+        if (!changed.isEmpty()) {
+            ++reloads;
+            subscriptions.publish(previous.snapshot.getValues(), values, changed);
+            Instrumentation instrumentation = loadOptions.getInstrumentation();
+            if (null != instrumentation)
+                instrumentation.reloaded(System.nanoTime() - start, changed.size());
+        }
+        return changed;
+    }
+
+    /**
+     * Replaces the secrets layer if the secrets file that would be found
+     * now is not the one that was read.
+     */
+    private void relocateSecrets(List<Layer> layers, Set<String> affected) {
+        if (null == secretsDir)
+            return;
+        File secretsFile = InstanceProperties.findSecretsFile(secretsDir);
+        File expected = (null != secretsFile)
+            ? secretsFile
+            : new File(secretsDir, InstanceProperties.SECRETS_PROPERTIES_RESOURCE_NAME);
+        int last = layers.size() - 1;
+        Layer layer = layers.get(last);
+        if (expected.equals(layer.getFile()))
+            return;
+        Layer relocated = (null != secretsFile)
+            ? Layer.read(secretsFile, instanceProperties.getLoadOptions())
+            : Layer.missing(expected);
+        affected.addAll(layer.getValues().stringPropertyNames());
+        affected.addAll(relocated.getValues().stringPropertyNames());
+        layers.set(last, relocated);
+    }
+
+    /**
+     * Polls for changes periodically. A reload that fails is recorded and
+     * polling continues; see <code>#getLastFailure</code>.
+     *
+     * @param executor The executor to poll with
+     * @param period The time between polls
+     * @param unit The time unit of the period
+     * @return The scheduled polling, which can be cancelled to stop it
+     */
+    public ScheduledFuture<?> start(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        return start(executor, period, unit, null);
+    }
+
+    /**
+     * Polls for changes periodically, reporting failed reloads.
+     *
+     * @param executor The executor to poll with
+     * @param period The time between polls
+     * @param unit The time unit of the period
+     * @param onFailure Receives the failure of each reload that fails, or null
+     * @return The scheduled polling, which can be cancelled to stop it
+     */
+    public ScheduledFuture<?> start(ScheduledExecutorService executor, long period, TimeUnit unit,
+                                    Consumer<RuntimeException> onFailure) {
+        return executor.scheduleWithFixedDelay(() -> poll(onFailure), period, period, unit);
+    }
+
+    /**
+     * Reloads without letting a failure cancel the scheduled polling.
+     */
+    private void poll(Consumer<RuntimeException> onFailure) {
+        try {
+            reload();
+        } catch (RuntimeException x) {
+            synchronized (this) {
+                ++failures;
+                lastFailure = x;
+            }
+            if (null != onFailure)
+                try {
+                    onFailure.accept(x);
+                } catch (RuntimeException ignored) {
+                    // The handler failing must not stop polling either
+                }
+        }
+    }
+
+    /**
+     * Freezes reloaded values, with their origins if provenance is tracked.
+     * The origins of the keys not affected by the reload are carried over
+     * from the previous snapshot.
+     */
+    private FrozenSpecification freeze(Map<String, String> values, LoadOptions loadOptions,
+                                       FrozenSpecification previous, List<Layer> layers, Set<String> affected) {
+        if (!loadOptions.isTrackingProvenance())
+            return FrozenSpecification.of(values, loadOptions);
+        Map<String, Origin> origins = new HashMap<>();
+        for (String key: values.keySet()) {
+            Origin origin = affected.contains(key) ? findOrigin(layers, key) : previous.getOrigin(key);
+            if (null != origin)
+                origins.put(key, origin);
+        }
+        return FrozenSpecification.of(values, loadOptions, origins);
+    }
+
+    /**
+     * Follows a key through the layers in load order, on top of its origin
+     * in the defaults, if any.
+     */
+    private Origin findOrigin(List<Layer> layers, String key) {
+        Origin origin = (defaults instanceof Specification) ? ((Specification) defaults).getOrigin(key) : null;
+        for (Layer layer: layers) {
+            Integer line = (null != layer.getLines()) ? layer.getLines().get(key) : null;
+            if (null != line)
+                origin = new Origin(layer.getPath(), line, layer.getValues().getProperty(key), origin);
+        }
+        return origin;
+    }
+
+    private String resolve(List<Layer> layers, String key) {
+        for (int i = layers.size() - 1; i >= 0; --i) {
+            String value = layers.get(i).getValues().getProperty(key);
+            if (null != value)
+                return value;
+        }
+        return null != defaults ? defaults.getProperty(key) : null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.brambolt.wrench;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The target contexts of instance properties, resolved in one batch.
+ *
+ * <p>The targets are held in listing order in two parallel arrays, so
+ * iterating them involves no map lookups and no copying. The contexts are
+ * the same maps that <code>InstanceProperties#getTargets</code> holds under
+ * <code>context</code>.</p>
+ *
+ * @see InstanceProperties#resolveTargets()
+ */
+public final class ResolvedTargets {
+
+    static final ResolvedTargets NONE = new ResolvedTargets(new String[0], newContexts(0));
+
+    static Map<String, Object>[] newContexts(int size) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map<String, Object>[] contexts = (Map<String, Object>[]) new Map[size];
+        return contexts;
+    }
+
+    private final String[] names;
+
+    private final Map<String, Object>[] contexts;
+
+    ResolvedTargets(String[] names, Map<String, Object>[] contexts) {
+        this.names = names;
+        this.contexts = contexts;
+    }
+
+    /**
+     * @return The same targets with read-only contexts; see <code>SealedMap</code>
+     */
+    ResolvedTargets sealed() {
+        Map<String, Object>[] sealed = newContexts(contexts.length);
+        for (int i = 0; i < contexts.length; ++i)
+            sealed[i] = SealedMap.of(contexts[i]);
+        return new ResolvedTargets(names, sealed);
+    }
+
+    /**
+     * @return The number of targets
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return The target names, in listing order
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * @param index The target index, in listing order
+     * @return The name of the target
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index The target index, in listing order
+     * @return The context of the target
+     */
+    public Map<String, Object> getContext(int index) {
+        return contexts[index];
+    }
+
+    /**
+     * @param name The target name
+     * @return The context of the target, or null if there is no such target
+     */
+    public Map<String, Object> getContext(String name) {
+        for (int i = 0; i < names.length; ++i)
+            if (names[i].equals(name))
+                return contexts[i];
+        return null;
+    }
+
+    /**
+     * Visits the targets in listing order.
+     *
+     * @param consumer Receives each target name and context
+     */
+    public void forEach(BiConsumer<String, Map<String, Object>> consumer) {
+        for (int i = 0; i < names.length; ++i)
+            consumer.accept(names[i], contexts[i]);
+    }
+}
@@ -0,0 +1,91 @@
+package com.brambolt.wrench;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only view of a nested map, in which the nested maps are read-only
+ * views too.
+ *
+ * <p>The structured views of sealed instance properties are handed out
+ * through this view, so no caller can modify the maps the other callers
+ * see, at any depth. The nested views are created as they are reached,
+ * which costs an allocation per access but never copies the maps.</p>
+ */
+final class SealedMap extends AbstractMap<String, Object> {
+
+    /**
+     * @param map The map, or null
+     * @return The read-only view, or null
+     */
+    static Map<String, Object> of(Map<String, Object> map) {
+        return (null == map || map instanceof SealedMap) ? map : new SealedMap(map);
+    }
+
+    /**
+     * @param map The map or read-only view, or null
+     * @return The underlying map, for code in this package that compares
+     *         the maps themselves
+     */
+    static Map<String, Object> unwrap(Map<String, Object> map) {
+        return (map instanceof SealedMap) ? ((SealedMap) map).map : map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object seal(Object value) {
+        return (value instanceof Map) ? of((Map<String, Object>) value) : value;
+    }
+
+    private final Map<String, Object> map;
+
+    private SealedMap(Map<String, Object> map) {
+        this.map = map;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return seal(map.get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, Object>> entries = map.entrySet().iterator();
+                return new Iterator<Entry<String, Object>>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        Entry<String, Object> entry = entries.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), seal(entry.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+}
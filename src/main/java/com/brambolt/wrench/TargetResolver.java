@@ -0,0 +1,147 @@
+package com.brambolt.wrench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves the contexts of all targets of a system in one batch.
+ *
+ * <p>The unit types listing is split, and the unit maps are looked up by
+ * type, once for the whole batch rather than once per target. Each target
+ * is then resolved independently: it only reads the shared system map and
+ * the unit index and only modifies its own target map, so the targets can
+ * be resolved concurrently.</p>
+ */
+class TargetResolver {
+
+    private static final String[] DEFAULT_UNIT_TYPES = new String[] { "environment", "host" };
+
+    private final Map<String, Object> system;
+
+    private final String[] unitTypes;
+
+    /**
+     * The units of the system by unit type, for example the hosts by name
+     * under <code>host</code>.
+     */
+    private final Map<String, Map<String, Object>> units = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    TargetResolver(Map<String, Object> system) {
+        this.system = system;
+        this.unitTypes = getUnitTypes(system);
+        for (String unitType: unitTypes)
+            units.put(unitType, (Map<String, Object>) system.get(unitType + "s"));
+    }
+
+    /**
+     * @param system The system map
+     * @return The unit types from the units listing, or the default
+     *         environment and host types
+     */
+    @SuppressWarnings("unchecked")
+    static String[] getUnitTypes(Map<String, Object> system) {
+        if (!system.containsKey("units"))
+            return DEFAULT_UNIT_TYPES.clone();
+        Map<String, Object> unitsSpecification = (Map<String, Object>) system.get("units");
+        return unitsSpecification.get("listing").toString().split(",");
+    }
+
+    /**
+     * Resolves the listed targets and stores each context in its target.
+     *
+     * @param targets The targets specification, with the listing
+     * @param executor The executor to resolve with, or null to resolve serially
+     * @return The resolved targets, in listing order
+     * @throws IllegalStateException If a listed target is not specified
+     */
+    @SuppressWarnings("unchecked")
+    ResolvedTargets resolve(Map<String, Object> targets, Executor executor) {
+        String[] names = ((String) targets.get("listing")).split(",");
+        Map<String, Object>[] contexts = ResolvedTargets.newContexts(names.length);
+        if (null == executor || 2 > names.length) {
+            for (int i = 0; i < names.length; ++i)
+                contexts[i] = resolve(names[i], (Map<String, Object>) targets.get(names[i]));
+            return new ResolvedTargets(names, contexts);
+        }
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+        for (String name: names) {
+            Map<String, Object> target = (Map<String, Object>) targets.get(name);
+            futures.add(CompletableFuture.supplyAsync(() -> resolve(name, target), executor));
+        }
+        for (int i = 0; i < names.length; ++i)
+            try {
+                contexts[i] = futures.get(i).join();
+            } catch (CompletionException x) {
+                if (x.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) x.getCause();
+                throw x;
+            }
+        return new ResolvedTargets(names, contexts);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> resolve(String targetName, Map<String, Object> target) {
+        if (null == target)
+            throw new IllegalStateException("No specification found for target " + targetName);
+        if (target.containsKey("context"))
+            return (Map<String, Object>) target.get("context"); // The context was defined already
+        // The context shares the system map and only holds its own units:
+        Map<String, Object> context = new OverlayMap<>(system);
+        context.remove("targets"); // Avoid stack overflow in toString(), etc.
+        for (String unitType: unitTypes)
+            if (target.containsKey(unitType))
+                resolveUnit(unitType, target, context);
+            else if (target.containsKey(unitType + "s"))
+                resolveUnits(unitType, target, context);
+        target.put("context", context);
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resolveUnit(String unitType, Map<String, Object> target, Map<String, Object> context) {
+        Map<String, Object> targetUnit = (Map<String, Object>) target.get(unitType);
+        String unitName = (String) targetUnit.get("name");
+        Map<String, Object> unit = (Map<String, Object>) units.get(unitType).get(unitName);
+        Map<String, Object> preparedUnit = overlayUnit(unit, targetUnit);
+        target.put(unitType, preparedUnit);
+        context.put(unitType, preparedUnit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resolveUnits(String unitType, Map<String, Object> target, Map<String, Object> context) {
+        Map<String, Object> unitsOfType = units.get(unitType);
+        Map<String, Object> targetUnits = (Map<String, Object>) target.get(unitType + "s");
+        String[] unitNames = targetUnits.get("listing").toString().split(",");
+        for (int i = 0; i < unitNames.length; ++i) {
+            Map<String, Object> unit = (Map<String, Object>) unitsOfType.get(unitNames[i]);
+            String key = unitType + i;
+            Map<String, Object> targetUnit = context.containsKey(key)
+                ? (Map<String, Object>) context.get(key)
+                : null;
+            context.put(key, overlayUnit(unit, targetUnit));
+        }
+    }
+
+    /**
+     * Combines a shared unit with the target-specific unit values, the shared
+     * unit values taking precedence, without copying the shared unit.
+     *
+     * @param unit The shared unit from the system map
+     * @param targetUnit The target-specific values, or null
+     * @return The combined unit
+     */
+    private static Map<String, Object> overlayUnit(Map<String, Object> unit, Map<String, Object> targetUnit) {
+        OverlayMap<String, Object> result = new OverlayMap<>(unit);
+        if (null != targetUnit)
+            for (Map.Entry<String, Object> entry: targetUnit.entrySet())
+                if (!unit.containsKey(entry.getKey()))
+                    result.put(entry.getKey(), entry.getValue());
+        return result;
+    }
+}
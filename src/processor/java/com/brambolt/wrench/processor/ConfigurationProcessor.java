@@ -0,0 +1,319 @@
+package com.brambolt.wrench.processor;
+
+import com.brambolt.PropertyValues;
+import com.brambolt.wrench.Configuration;
+import com.brambolt.wrench.Default;
+import com.brambolt.wrench.Key;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the typed configuration classes for interfaces annotated with
+ * <code>Configuration</code>.
+ *
+ * <p>For an interface <code>ServerConfiguration</code> the processor
+ * generates the final class <code>ServerConfigurationValues</code> in the
+ * same package. The class holds one final field per property, of the
+ * declared primitive or reference type, and implements the interface
+ * methods, including the inherited ones, as field reads. Its
+ * <code>bind</code> method looks up each configured key in the
+ * specification, so binding costs one lookup per property however many
+ * other properties the group has, and then applies defaults, checks that
+ * required properties are present and parses each value once.</p>
+ *
+ * <p>Keys, return types and defaults are checked at compile time, so a
+ * duplicate key, an unsupported type or a default that does not parse is a
+ * compilation error.</p>
+ */
+public class ConfigurationProcessor extends AbstractProcessor {
+
+    private static final String CLASS_SUFFIX = "Values";
+
+    /**
+     * A configured property.
+     */
+    private static class Property {
+
+        final String method;
+
+        final String key;
+
+        final String type;
+
+        final String defaultValue;
+
+        Property(String method, String key, String type, String defaultValue) {
+            this.method = method;
+            this.key = key;
+            this.type = type;
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return The name of the raw value variable in the binder
+         */
+        String raw() {
+            return method + "Value";
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(Configuration.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        for (Element element: roundEnvironment.getElementsAnnotatedWith(Configuration.class)) {
+            if (ElementKind.INTERFACE != element.getKind()) {
+                error(element, "Only interfaces can be annotated with @Configuration");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<Property> properties = getProperties(type);
+            if (null != properties)
+                generate(type, type.getAnnotation(Configuration.class).groupId(), properties);
+        }
+        return true;
+    }
+
+    /**
+     * @return The properties, or null if there were errors
+     */
+    private List<Property> getProperties(TypeElement type) {
+        List<Property> properties = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        boolean valid = true;
+        for (Element member: processingEnv.getElementUtils().getAllMembers(type)) {
+            if (ElementKind.METHOD != member.getKind() || !member.getModifiers().contains(Modifier.ABSTRACT))
+                continue;
+            ExecutableElement method = (ExecutableElement) member;
+            String name = method.getSimpleName().toString();
+            if (!method.getParameters().isEmpty()) {
+                error(method, "Configuration methods can't have parameters");
+                valid = false;
+                continue;
+            }
+            String typeName = getTypeName(method.getReturnType());
+            if (null == typeName) {
+                error(method, "Unsupported configuration type: " + method.getReturnType());
+                valid = false;
+                continue;
+            }
+            Key key = method.getAnnotation(Key.class);
+            String keyName = (null != key) ? key.value() : name;
+            if (!keys.add(keyName)) {
+                error(method, "Duplicate configuration key: " + keyName);
+                valid = false;
+                continue;
+            }
+            Default defaultAnnotation = method.getAnnotation(Default.class);
+            String defaultValue = (null != defaultAnnotation) ? defaultAnnotation.value() : null;
+            if (null != defaultValue && !isValid(typeName, keyName, defaultValue)) {
+                error(method, "Invalid default for " + typeName + " property " + keyName + ": " + defaultValue);
+                valid = false;
+                continue;
+            }
+            properties.add(new Property(name, keyName, typeName, defaultValue));
+        }
+        return valid ? properties : null;
+    }
+
+    /**
+     * @return The type name used in the generated code, or null if the type
+     *         is not supported
+     */
+    private static String getTypeName(TypeMirror type) {
+        if (TypeKind.BOOLEAN == type.getKind())
+            return "boolean";
+        if (TypeKind.INT == type.getKind())
+            return "int";
+        if (TypeKind.LONG == type.getKind())
+            return "long";
+        if (TypeKind.DOUBLE == type.getKind())
+            return "double";
+        String name = type.toString();
+        if ("java.lang.String".equals(name) || "java.time.Duration".equals(name))
+            return name;
+        return null;
+    }
+
+    private static boolean isValid(String typeName, String key, String value) {
+        try {
+            parse(typeName, key, value);
+            return true;
+        } catch (RuntimeException x) {
+            return false;
+        }
+    }
+
+    private static void parse(String typeName, String key, String value) {
+        switch (typeName) {
+            case "int":
+                PropertyValues.parseInt(key, value);
+                break;
+            case "long":
+                PropertyValues.parseLong(key, value);
+                break;
+            case "double":
+                PropertyValues.parseDouble(key, value);
+                break;
+            case "java.time.Duration":
+                PropertyValues.parseDuration(key, value);
+                break;
+            default:
+                break; // Any string is a valid boolean or string
+        }
+    }
+
+    private void generate(TypeElement type, String groupId, List<Property> properties) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = packageElement.isUnnamed() ? null : packageElement.getQualifiedName().toString();
+        String interfaceName = type.getQualifiedName().toString();
+        String className = type.getSimpleName() + CLASS_SUFFIX;
+        String qualifiedName = (null != packageName) ? packageName + "." + className : className;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                write(out, packageName, interfaceName, className, groupId, properties);
+            }
+        } catch (IOException x) {
+            error(type, "Unable to write " + qualifiedName + ": " + x.getMessage());
+        }
+    }
+
+    private static void write(PrintWriter out, String packageName, String interfaceName, String className,
+                              String groupId, List<Property> properties) {
+        if (null != packageName) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        out.println("/**");
+        out.println(" * The properties of <code>" + interfaceName + "</code>, read once.");
+        out.println(" *");
+        out.println(" * <p>Generated by " + ConfigurationProcessor.class.getName() + ".</p>");
+        out.println(" */");
+        out.println("public final class " + className + " implements " + interfaceName + " {");
+        out.println();
+        out.println("    public static final String GROUP_ID = " + literal(groupId) + ";");
+        for (Property property: properties) {
+            out.println();
+            out.println("    private final " + property.type + " " + property.method + ";");
+        }
+        out.println();
+        out.print("    private " + className + "(");
+        for (int i = 0; i < properties.size(); ++i)
+            out.print((0 < i ? ", " : "") + properties.get(i).type + " " + properties.get(i).method);
+        out.println(") {");
+        for (Property property: properties)
+            out.println("        this." + property.method + " = " + property.method + ";");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * Reads the properties from the keys under the group identifier.");
+        out.println("     *");
+        out.println("     * @param specification The properties to read");
+        out.println("     * @return The configuration");
+        out.println("     * @throws java.util.NoSuchElementException If a required property is not defined");
+        out.println("     */");
+        out.println("    public static " + className + " bind(com.brambolt.Specification specification) {");
+        for (Property property: properties)
+            out.println("        String " + property.raw() + " = specification.getProperty(GROUP_ID + "
+                + literal("." + property.key) + ");");
+        for (Property property: properties) {
+            out.println("        if (null == " + property.raw() + ")");
+            if (null != property.defaultValue)
+                out.println("            " + property.raw() + " = " + literal(property.defaultValue) + ";");
+            else
+                out.println("            throw new java.util.NoSuchElementException(\"Missing property: \" + GROUP_ID + "
+                    + literal("." + property.key) + ");");
+        }
+        out.println("        return new " + className + "(");
+        for (int i = 0; i < properties.size(); ++i)
+            out.println("            " + conversion(properties.get(i)) + (i < properties.size() - 1 ? "," : ");"));
+        if (properties.isEmpty())
+            out.println("        );");
+        out.println("    }");
+        for (Property property: properties) {
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + property.type + " " + property.method + "() {");
+            out.println("        return " + property.method + ";");
+            out.println("    }");
+        }
+        out.println();
+        out.println("    @Override");
+        out.println("    public String toString() {");
+        out.print("        return \"" + className + "{\"");
+        for (int i = 0; i < properties.size(); ++i)
+            out.print(" + \"" + (0 < i ? ", " : "") + properties.get(i).method + "=\" + " + properties.get(i).method);
+        out.println(" + \"}\";");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private static String conversion(Property property) {
+        String name = "GROUP_ID + " + literal("." + property.key);
+        switch (property.type) {
+            case "boolean":
+                return "com.brambolt.PropertyValues.parseBoolean(" + name + ", " + property.raw() + ")";
+            case "int":
+                return "com.brambolt.PropertyValues.parseInt(" + name + ", " + property.raw() + ")";
+            case "long":
+                return "com.brambolt.PropertyValues.parseLong(" + name + ", " + property.raw() + ")";
+            case "double":
+                return "com.brambolt.PropertyValues.parseDouble(" + name + ", " + property.raw() + ")";
+            case "java.time.Duration":
+                return "com.brambolt.PropertyValues.parseDuration(" + name + ", " + property.raw() + ")";
+            default:
+                return property.raw();
+        }
+    }
+
+    /**
+     * Writes a string as a Java string literal.
+     */
+    private static String literal(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if ('"' == c || '\\' == c)
+                builder.append('\\').append(c);
+            else if (' ' > c || 0x7e < c)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        Messager messager = processingEnv.getMessager();
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,56 @@
+package com.brambolt
+
+class BinarySnapshotSpec extends spock.lang.Specification {
+
+  def 'can write and read binary snapshot'() {
+    given:
+    File file = java.nio.file.Files.createTempFile('specification', '.snapshot').toFile()
+    Properties defaults = new Properties()
+    defaults.setProperty('a', '1')
+    Specification spec = new Specification(defaults)
+    spec.setProperty('b', '\u00e9')
+    spec.setProperty('c', '1')
+    when:
+    BinarySnapshot.write(spec, file)
+    FrozenSpecification frozen = BinarySnapshot.read(file)
+    then:
+    [ a: '1', b: '\u00e9', c: '1' ] == frozen.getValues()
+    cleanup:
+    file.delete()
+  }
+
+  def 'rejects corrupt and truncated binary snapshots'() {
+    given:
+    File file = java.nio.file.Files.createTempFile('specification', '.snapshot').toFile()
+    Specification spec = new Specification()
+    spec.setProperty('key', 'value')
+    BinarySnapshot.write(spec, file)
+    byte[] bytes = file.bytes
+    when: 'the file is truncated'
+    file.bytes = Arrays.copyOf(bytes, bytes.length - 3)
+    BinarySnapshot.read(file)
+    then:
+    thrown(IllegalStateException)
+    when: 'the string count is corrupt'
+    byte[] corrupt = bytes.clone()
+    corrupt[8] = (byte) 0x7f
+    file.bytes = corrupt
+    BinarySnapshot.read(file)
+    then:
+    thrown(IllegalStateException)
+    when: 'the last value index is corrupt'
+    corrupt = bytes.clone()
+    corrupt[corrupt.length - 4] = (byte) 0xff
+    file.bytes = corrupt
+    BinarySnapshot.read(file)
+    then:
+    thrown(IllegalStateException)
+    when: 'the file is not a snapshot'
+    file.text = 'key=value'
+    BinarySnapshot.read(file)
+    then:
+    thrown(IllegalStateException)
+    cleanup:
+    file.delete()
+  }
+}
@@ -0,0 +1,52 @@
+package com.brambolt
+
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+class ChangeSubscriptionsSpec extends spock.lang.Specification {
+
+  static final Executor DIRECT = { Runnable runnable -> runnable.run() } as Executor
+
+  def 'keeps rejected changes for the next publish'() {
+    given:
+    ChangeSubscriptions subscriptions = new ChangeSubscriptions()
+    int rejections = 1
+    Executor rejecting = { Runnable runnable ->
+      if (0 < rejections--)
+        throw new RejectedExecutionException('Saturated')
+      runnable.run()
+    } as Executor
+    List<PropertyChanges> received = []
+    List<PropertyChanges> others = []
+    subscriptions.subscribeKey('a', { received << it } as PropertyListener, rejecting)
+    subscriptions.subscribe('', { others << it } as PropertyListener, DIRECT)
+    when: 'the executor rejects the notification'
+    subscriptions.publish([ a: '1' ], [ a: '2' ], [ 'a' ] as Set)
+    then:
+    received.isEmpty()
+    1 == others.size()
+    when: 'the next publish is accepted'
+    subscriptions.publish([ a: '2' ], [ a: '3' ], [ 'a' ] as Set)
+    then:
+    1 == received.size()
+    '1' == received[0].getOldValue('a')
+    '3' == received[0].getNewValue('a')
+  }
+
+  def 'can subscribe to changes under prefix'() {
+    given:
+    ChangeSubscriptions subscriptions = new ChangeSubscriptions()
+    List<PropertyChanges> received = []
+    subscriptions.subscribe('g.hosts', { received << it } as PropertyListener, { it.run() } as java.util.concurrent.Executor)
+    when:
+    subscriptions.publish(
+      [ 'g.hosts.a.address': 'x' ],
+      [ 'g.hosts.a.address': 'y', 'g.hosts.b.address': 'z', 'g.hostsfile': 'f' ],
+      [ 'g.hosts.a.address', 'g.hosts.b.address', 'g.hostsfile' ] as Set)
+    then:
+    1 == received.size()
+    [ 'g.hosts.a.address', 'g.hosts.b.address' ] as Set == received[0].keys
+    'x' == received[0].getOldValue('g.hosts.a.address')
+    'z' == received[0].getNewValue('g.hosts.b.address')
+  }
+}
@@ -0,0 +1,31 @@
+package com.brambolt
+
+class FrozenSpecificationSpec extends spock.lang.Specification {
+
+  def 'can freeze with defaults resolved'() {
+    given:
+    Properties defaults = new Properties()
+    defaults.setProperty('p1', 'd1')
+    defaults.setProperty('p2', 'd2')
+    Specification spec = new Specification(defaults)
+    spec.setProperty('p2', 'v2')
+    when:
+    FrozenSpecification frozen = spec.freeze()
+    spec.setProperty('p1', 'v1')
+    then:
+    'd1' == frozen.getProperty('p1')
+    'v2' == frozen.get('p2')
+    frozen.containsKey('p1')
+    !frozen.containsKey('p3')
+    frozen.is(frozen.freeze())
+  }
+
+  def 'can not modify frozen specification'() {
+    given:
+    FrozenSpecification frozen = new Specification().freeze()
+    when:
+    frozen.setProperty('p1', 'v1')
+    then:
+    thrown(UnsupportedOperationException)
+  }
+}
@@ -0,0 +1,24 @@
+package com.brambolt
+
+class InterpolationSpec extends spock.lang.Specification {
+
+  def 'can interpolate references'() {
+    given:
+    Specification spec = new Specification()
+    spec.setProperty('address', 'a.example.com')
+    spec.setProperty('port', '80')
+    spec.setProperty('url', 'https://${address}:${port}/${path}')
+    expect:
+    'https://a.example.com:80/${path}' == spec.getInterpolatedProperty('url')
+    'https://${address}:${port}/${path}' == spec.getProperty('url')
+    when:
+    spec.setProperty('port', '8080')
+    then:
+    'https://a.example.com:8080/${path}' == spec.getInterpolatedProperty('url')
+    when:
+    spec.setProperty('address', '${url}')
+    spec.getInterpolatedProperty('url')
+    then:
+    thrown(IllegalStateException)
+  }
+}
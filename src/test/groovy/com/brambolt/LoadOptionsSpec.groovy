@@ -0,0 +1,33 @@
+package com.brambolt
+
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class LoadOptionsSpec extends spock.lang.Specification {
+
+  def 'can load resources in parallel in override order'() {
+    given:
+    ExecutorService pool = Executors.newFixedThreadPool(3)
+    AtomicInteger submitted = new AtomicInteger()
+    // The earlier resources finish last:
+    Executor executor = { Runnable task ->
+      int delay = 50 * (3 - submitted.getAndIncrement())
+      pool.execute { Thread.sleep(delay); task.run() }
+    } as Executor
+    Specification spec = new Specification(null, LoadOptions.defaults().withExecutor(executor))
+    when:
+    spec.loadPropertiesFromResources([
+      'com/brambolt/order/first.properties',
+      'com/brambolt/order/second.properties',
+      'com/brambolt/order/third.properties'])
+    then:
+    3 == submitted.get()
+    '3' == spec.getProperty('a')
+    '2' == spec.getProperty('b')
+    '1' == spec.getProperty('c')
+    cleanup:
+    pool.shutdown()
+  }
+}
@@ -0,0 +1,19 @@
+package com.brambolt
+
+class OriginSpec extends spock.lang.Specification {
+
+  def 'can find origin of overridden property'() {
+    given:
+    Specification spec = new Specification(null, LoadOptions.defaults().withProvenance(true))
+    when:
+    spec.loadProperties('first.properties', new ByteArrayInputStream('a=1\nb=2\n'.bytes))
+    spec.loadProperties('second.properties', new ByteArrayInputStream('# comment\na=3\n'.bytes))
+    then:
+    '3' == spec.getProperty('a')
+    'second.properties' == spec.getOrigin('a').path
+    2 == spec.getOrigin('a').line
+    ['1'] == spec.getOrigin('a').overriddenValues
+    'first.properties' == spec.getOrigin('b').path
+    null == spec.getOrigin('c')
+  }
+}
@@ -0,0 +1,39 @@
+package com.brambolt
+
+class ParsedValueSpec extends spock.lang.Specification {
+
+  def 'can get typed values after changes'() {
+    given:
+    Properties defaults = new Properties()
+    defaults.setProperty('p1', '1')
+    Specification spec = new Specification(defaults)
+    spec.setProperty('p2', 'PT30S')
+    expect:
+    1 == spec.getInt('p1', 0)
+    1L == spec.getLong('p1', 0L)
+    java.time.Duration.ofSeconds(30) == spec.getDuration('p2')
+    7 == spec.getInt('p3', 7)
+    when:
+    spec.setProperty('p1', '2')
+    spec.setProperty('p3', 'true')
+    then:
+    2 == spec.getInt('p1', 0)
+    spec.getBoolean('p3', false)
+  }
+
+  def 'can get typed values after plain defaults change'() {
+    given:
+    Properties defaults = new Properties()
+    defaults.setProperty('p1', '1')
+    Specification spec = new Specification(defaults)
+    PropertyHandle<Integer> handle = spec.handle('p1', Integer)
+    expect:
+    1 == spec.getInt('p1', 0)
+    1 == handle.get()
+    when:
+    defaults.setProperty('p1', '2')
+    then:
+    2 == spec.getInt('p1', 0)
+    2 == handle.get()
+  }
+}
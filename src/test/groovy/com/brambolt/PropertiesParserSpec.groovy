@@ -0,0 +1,16 @@
+package com.brambolt
+
+import java.nio.charset.StandardCharsets
+
+class PropertiesParserSpec extends spock.lang.Specification {
+
+  def 'can load UTF-8 properties'() {
+    given:
+    Specification spec = new Specification(null, LoadOptions.defaults().withCharset(StandardCharsets.UTF_8))
+    when:
+    spec.loadProperties('utf8.properties', new ByteArrayInputStream('a=\u00e9\u20ac\nb=\\u00e9\n'.getBytes(StandardCharsets.UTF_8)))
+    then:
+    '\u00e9\u20ac' == spec.getProperty('a')
+    '\u00e9' == spec.getProperty('b')
+  }
+}
@@ -0,0 +1,62 @@
+package com.brambolt
+
+class PropertyHandleSpec extends spock.lang.Specification {
+
+  def 'reads the resolved value until the defaults chain changes'() {
+    given:
+    Specification defaults = new Specification()
+    defaults.setProperty('p', '1000')
+    Specification spec = new Specification(defaults)
+    Specification sibling = new Specification(defaults)
+    PropertyHandle<Integer> handle = spec.handle('p', Integer)
+    Integer first = handle.get()
+    expect:
+    1000 == first
+    first.is(handle.get())
+    when: 'a specification sharing the defaults changes'
+    long stamp = spec.getModificationStamp()
+    sibling.setProperty('q', '1')
+    then:
+    stamp != spec.getModificationStamp()
+    1000 == handle.get()
+    when: 'the defaults change'
+    defaults.setProperty('p', '2000')
+    then:
+    2000 == handle.get()
+    when: 'the specification overrides the defaults'
+    spec.setProperty('p', '3000')
+    then:
+    3000 == handle.get()
+    handle.get().is(handle.get())
+  }
+
+  def 'compares the value on every read when the defaults are plain properties'() {
+    given:
+    Properties defaults = new Properties()
+    defaults.setProperty('p', '1000')
+    Specification spec = new Specification(new Specification(defaults))
+    PropertyHandle<Integer> handle = spec.handle('p', Integer)
+    expect:
+    !spec.isVersionTracked()
+    1000 == handle.get()
+    handle.get().is(handle.get())
+    when:
+    defaults.setProperty('p', '2000')
+    then:
+    2000 == handle.get()
+  }
+
+  def 'can read through handle after changes'() {
+    given:
+    Specification spec = new Specification()
+    spec.setProperty('p1', '10')
+    PropertyHandle<Integer> handle = spec.handle('p1', Integer)
+    expect:
+    10 == handle.get()
+    10 == handle.getInt(0)
+    when:
+    spec.setProperty('p1', '20')
+    then:
+    20 == handle.get()
+  }
+}
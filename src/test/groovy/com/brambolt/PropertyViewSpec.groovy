@@ -0,0 +1,38 @@
+package com.brambolt
+
+class PropertyViewSpec extends spock.lang.Specification {
+
+  def 'can view properties under prefix'() {
+    given:
+    Specification spec = new Specification()
+    spec.setProperty('g.system.hosts.remote.address', 'r')
+    spec.setProperty('g.system.hosts.remote.port', '8080')
+    spec.setProperty('g.system.hostsfile', 'f')
+    when:
+    PropertyView view = spec.view('g.system.hosts')
+    then:
+    [ 'remote.address': 'r', 'remote.port': '8080' ] == view
+    8080 == view.view('remote').getInt('port', 0)
+    ['g.system.hosts.remote.address', 'g.system.hosts.remote.port'] == spec.getKeys('g.system.hosts')
+    when:
+    spec.setProperty('g.system.hosts.local.address', 'l')
+    then:
+    3 == view.size()
+    'l' == view.get('local.address')
+    ['local.address', 'remote.address', 'remote.port'] == view.keySet() as List
+    view.keySet().contains('remote.port')
+  }
+
+  def 'can list view keys without looking up values'() {
+    given:
+    SpecificationMetrics metrics = new SpecificationMetrics()
+    Specification spec = new Specification(null, LoadOptions.defaults().withInstrumentation(metrics))
+    spec.setProperty('g.a', '1')
+    spec.setProperty('g.b', '2')
+    when:
+    List<String> keys = spec.view('g').keySet() as List
+    then:
+    ['a', 'b'] == keys
+    0 == metrics.lookups
+  }
+}
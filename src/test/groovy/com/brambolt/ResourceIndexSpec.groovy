@@ -0,0 +1,104 @@
+package com.brambolt
+
+import com.brambolt.wrench.ApplicationProperties
+import com.brambolt.wrench.InstanceProperties
+
+import java.nio.file.Files
+
+class ResourceIndexSpec extends spock.lang.Specification {
+
+  File dir
+
+  def setup() {
+    dir = Files.createTempDirectory('resources').toFile()
+  }
+
+  def cleanup() {
+    dir.deleteDir()
+  }
+
+  def 'probes with the context class loader resources are loaded with'() {
+    given:
+    new File(dir, 'extra').mkdirs()
+    new File(dir, 'extra/only.properties').text = 'a=1\n'
+    ClassLoader loader = new URLClassLoader([ dir.toURI().toURL() ] as URL[], (ClassLoader) null)
+    ResourceIndex index = ResourceIndex.probing()
+    expect:
+    index.is(ResourceIndex.probing())
+    index.exists('com/brambolt/order/first.properties')
+    !index.exists('com/brambolt/order/missing.properties')
+    !index.exists('extra/only.properties')
+    when:
+    ResourceIndex other = withContextClassLoader(loader) { ResourceIndex.probing() }
+    then:
+    !other.is(index)
+    other.exists('extra/only.properties')
+    !other.exists('com/brambolt/order/first.properties')
+  }
+
+  def 'answers from the manifests without searching the class path'() {
+    given:
+    File resourcesDir = new File(getClass().getResource('/com/brambolt/order/first.properties').toURI())
+      .parentFile.parentFile.parentFile.parentFile
+    ResourceIndex.writeManifest(resourcesDir, new File(dir, ResourceIndex.MANIFEST_RESOURCE_NAME))
+    ClassLoader loader = new URLClassLoader([ dir.toURI().toURL() ] as URL[], (ClassLoader) null)
+    when:
+    ResourceIndex index = ResourceIndex.fromManifests(loader)
+    then:
+    index.exists('com/brambolt/order/first.properties')
+    index.exists('com/brambolt/test/targets/instance.properties')
+    !index.exists('com/brambolt/test/targets/application.properties')
+    when:
+    InstanceProperties instance = InstanceProperties.getFor(
+      'com.brambolt.test.targets', null, LoadOptions.defaults().withResourceIndex(index))
+    then:
+    'targets' == instance.getProperty('com.brambolt.test.targets.name')
+  }
+
+  def 'keeps the index when other options are set after it'() {
+    given:
+    ResourceIndex index = ResourceIndex.probing()
+    expect:
+    index.is(LoadOptions.defaults().withResourceIndex(index).withRecordingLayers(true).getResourceIndex())
+    index.is(LoadOptions.defaults().withResourceIndex(index)
+      .withProvenance(true).withValuePool(new ValuePool()).withCharset(java.nio.charset.StandardCharsets.UTF_8)
+      .getResourceIndex())
+  }
+
+  def 'skips application properties the index knows are missing'() {
+    given:
+    String resourcePath = 'com/brambolt/test/utf8/application.properties'
+    List<String> asked = []
+    ResourceIndex none = new ResourceIndex() {
+      @Override
+      boolean exists(String path) {
+        asked << path
+        false
+      }
+    }
+    when:
+    ApplicationProperties skipped = ApplicationProperties.create(resourcePath, LoadOptions.defaults().withResourceIndex(none))
+    then:
+    [ resourcePath ] == asked
+    skipped.isEmpty()
+    null != ApplicationProperties.create(resourcePath).getProperty('com.brambolt.test.utf8.greeting')
+  }
+
+  def 'fails without manifests'() {
+    when:
+    ResourceIndex.fromManifests(new URLClassLoader([ dir.toURI().toURL() ] as URL[], (ClassLoader) null))
+    then:
+    thrown(IllegalStateException)
+  }
+
+  private static <T> T withContextClassLoader(ClassLoader loader, Closure<T> closure) {
+    Thread thread = Thread.currentThread()
+    ClassLoader context = thread.contextClassLoader
+    thread.contextClassLoader = loader
+    try {
+      closure.call()
+    } finally {
+      thread.contextClassLoader = context
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.brambolt
+
+class SnapshotSpec extends spock.lang.Specification {
+
+  def 'can sync snapshot deltas through drop directory'() {
+    given:
+    File dropDir = java.nio.file.Files.createTempDirectory('snapshots').toFile()
+    SnapshotPublisher publisher = new SnapshotPublisher(dropDir)
+    SnapshotSubscriber subscriber = new SnapshotSubscriber()
+    Specification spec = new Specification()
+    spec.setProperty('a', '1')
+    spec.setProperty('b', '2')
+    when:
+    SpecificationSnapshot first = publisher.publish(spec)
+    then:
+    subscriber.poll(dropDir)
+    first.hash == subscriber.snapshot.hash
+    '2' == subscriber.get().getProperty('b')
+    when:
+    spec.setProperty('b', '3')
+    spec.remove('a')
+    SpecificationSnapshot second = publisher.publish(spec)
+    SnapshotDelta delta = second.diff(first)
+    then:
+    [ 'b' ] == delta.changedKeys
+    [ 'a' ] == delta.removedKeys
+    subscriber.poll(dropDir)
+    !subscriber.poll(dropDir)
+    second.hash == subscriber.snapshot.hash
+    null == subscriber.get().getProperty('a')
+    '3' == subscriber.get().getProperty('b')
+  }
+
+  def 'can sync snapshot deltas over loopback socket'() {
+    given:
+    SnapshotPublisher publisher = new SnapshotPublisher()
+    SnapshotSubscriber subscriber = new SnapshotSubscriber()
+    Specification spec = new Specification()
+    spec.setProperty('a', '1')
+    publisher.publish(spec)
+    SnapshotPublisher.Server server = publisher.serve(0)
+    InetSocketAddress address = new InetSocketAddress(InetAddress.loopbackAddress, server.port)
+    when:
+    boolean changed = subscriber.sync(address)
+    then:
+    changed
+    '1' == subscriber.get().getProperty('a')
+    !subscriber.sync(address)
+    when:
+    spec.setProperty('a', '2')
+    publisher.publish(spec)
+    then:
+    subscriber.sync(address)
+    '2' == subscriber.get().getProperty('a')
+    publisher.snapshot.hash == subscriber.snapshot.hash
+    cleanup:
+    server.close()
+  }
+
+  def 'falls back to the full snapshot after the publisher restarts'() {
+    given:
+    File dropDir = java.nio.file.Files.createTempDirectory('snapshots').toFile()
+    SnapshotSubscriber subscriber = new SnapshotSubscriber()
+    Specification spec = new Specification()
+    SnapshotPublisher publisher = new SnapshotPublisher(dropDir)
+    (1..3).each { spec.setProperty('a', it.toString()); publisher.publish(spec) }
+    subscriber.poll(dropDir)
+    expect:
+    3L == subscriber.snapshot.sequence
+    when: 'a new publisher starts numbering again'
+    publisher = new SnapshotPublisher(dropDir)
+    spec.setProperty('b', '1')
+    SpecificationSnapshot restarted = publisher.publish(spec)
+    then:
+    1L == restarted.sequence
+    subscriber.poll(dropDir)
+    restarted.hash == subscriber.snapshot.hash
+    '1' == subscriber.get().getProperty('b')
+    when: 'the new publisher passes the old sequence'
+    publisher = new SnapshotPublisher(dropDir)
+    (1..5).each { spec.setProperty('c', it.toString()); publisher.publish(spec) }
+    then:
+    subscriber.poll(dropDir)
+    publisher.snapshot.hash == subscriber.snapshot.hash
+    '5' == subscriber.get().getProperty('c')
+    !subscriber.poll(dropDir)
+    cleanup:
+    dropDir.deleteDir()
+  }
+
+  def 'rejects corrupt snapshot delta frames'() {
+    given:
+    Specification spec = new Specification()
+    spec.setProperty('a', '1')
+    SnapshotDelta delta = SpecificationSnapshot.of(spec, 1L).diff(SpecificationSnapshot.EMPTY)
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+    delta.encode(new DataOutputStream(bytes))
+    byte[] frame = bytes.toByteArray()
+    expect:
+    delta.hash == decode(frame).hash
+    [ 'a' ] == decode(frame).changedKeys
+    when: 'the frame length is negative'
+    decode(withLength(frame, -1))
+    then:
+    thrown(IllegalStateException)
+    when: 'the frame length is too large'
+    decode(withLength(frame, SnapshotDelta.MAX_FRAME_LENGTH + 1))
+    then:
+    thrown(IllegalStateException)
+    when: 'a string length in the frame is corrupt'
+    byte[] corrupt = frame.clone()
+    corrupt[16] = (byte) 0x7f
+    decode(corrupt)
+    then:
+    thrown(IllegalStateException)
+    when: 'the tables are not a delta'
+    decode(frameOf([ other: [ a: '1' ] ]))
+    then:
+    thrown(IllegalStateException)
+    when: 'a sequence is not a number'
+    Map<String, Map<String, String>> tables = delta.toTables()
+    tables.delta = new HashMap<>(tables.delta)
+    tables.delta.sequence = 'x'
+    decode(frameOf(tables))
+    then:
+    thrown(IllegalStateException)
+  }
+
+  private static SnapshotDelta decode(byte[] frame) {
+    SnapshotDelta.decode(new DataInputStream(new ByteArrayInputStream(frame)), 'test')
+  }
+
+  private static byte[] withLength(byte[] frame, int length) {
+    byte[] copy = frame.clone()
+    java.nio.ByteBuffer.wrap(copy).putInt(0, length)
+    copy
+  }
+
+  private static byte[] frameOf(Map<String, Map<String, String>> tables) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+    BinarySnapshot.encode(tables, new DataOutputStream(bytes))
+    ByteArrayOutputStream frame = new ByteArrayOutputStream()
+    DataOutputStream out = new DataOutputStream(frame)
+    out.writeInt(bytes.size())
+    out.write(bytes.toByteArray())
+    frame.toByteArray()
+  }
+
+  def 'applies snapshots to a receiving specification'() {
+    given:
+    File dropDir = java.nio.file.Files.createTempDirectory('snapshots').toFile()
+    SnapshotPublisher publisher = new SnapshotPublisher(dropDir)
+    Specification target = new Specification()
+    target.setProperty('stale', 'x')
+    SnapshotSubscriber subscriber = new SnapshotSubscriber(null, target)
+    Specification spec = new Specification()
+    spec.setProperty('a', '1')
+    spec.setProperty('b', '2')
+    long version = target.getVersion()
+    when: 'the first snapshot is full'
+    publisher.publish(spec)
+    subscriber.poll(dropDir)
+    then:
+    version + 1 == target.getVersion()
+    '1' == target.getProperty('a')
+    '2' == target.getProperty('b')
+    'x' == target.getProperty('stale')
+    when: 'the next snapshot is a delta'
+    spec.remove('a')
+    spec.setProperty('b', '3')
+    publisher.publish(spec)
+    subscriber.poll(dropDir)
+    then:
+    version + 2 == target.getVersion()
+    null == target.getProperty('a')
+    '3' == target.getProperty('b')
+    when: 'a full snapshot replaces the properties of the previous one'
+    publisher = new SnapshotPublisher(dropDir)
+    Specification other = new Specification()
+    other.setProperty('c', '4')
+    publisher.publish(other)
+    subscriber.poll(dropDir)
+    then:
+    null == target.getProperty('b')
+    '4' == target.getProperty('c')
+    'x' == target.getProperty('stale')
+    when:
+    new SnapshotSubscriber(null, new Specification().freeze())
+    then:
+    thrown(IllegalArgumentException)
+    cleanup:
+    dropDir.deleteDir()
+  }
+
+  def 'does not wait forever on stalled snapshot connections'() {
+    given:
+    SnapshotPublisher publisher = new SnapshotPublisher()
+    Specification spec = new Specification()
+    spec.setProperty('a', '1')
+    publisher.publish(spec)
+    SnapshotPublisher.Server server = publisher.serve(0, 200)
+    InetSocketAddress address = new InetSocketAddress(InetAddress.loopbackAddress, server.port)
+    Socket stalled = new Socket(address.address, address.port) // Connects and never sends a request
+    ServerSocket silent = new ServerSocket(0, 50, InetAddress.loopbackAddress)
+    SnapshotSubscriber subscriber = new SnapshotSubscriber()
+    when: 'another subscriber has a connection open'
+    boolean changed = subscriber.sync(address, 5000)
+    then:
+    changed
+    '1' == subscriber.get().getProperty('a')
+    -1 == stalled.inputStream.read() // Dropped after the server timeout
+    when: 'the server accepts but never answers'
+    long start = System.currentTimeMillis()
+    subscriber.sync(new InetSocketAddress(InetAddress.loopbackAddress, silent.localPort), 200)
+    then:
+    thrown(IllegalStateException)
+    5000 > System.currentTimeMillis() - start
+    cleanup:
+    stalled.close()
+    silent.close()
+    server.close()
+  }
+}
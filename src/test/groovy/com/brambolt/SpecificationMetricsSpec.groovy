@@ -0,0 +1,73 @@
+package com.brambolt
+
+import com.brambolt.wrench.ApplicationProperties
+
+class SpecificationMetricsSpec extends spock.lang.Specification {
+
+  def 'keeps the latest load of each layer'() {
+    given:
+    SpecificationMetrics metrics = new SpecificationMetrics()
+    when:
+    metrics.layerLoaded('a', 3000000L, 10L)
+    metrics.layerLoaded('b', 1000000L, 20L)
+    metrics.layerLoaded('a', 2000000L, 30L)
+    then:
+    2 == metrics.layerCount
+    50L == metrics.bytesLoaded
+    3L == metrics.loadMillis
+    [ a: 2L, b: 1L ] == metrics.layerLoadMillis
+    [ 'a', 'b' ] == metrics.layerLoadMillis.keySet() as List
+  }
+
+  def 'records reload times and changes'() {
+    given:
+    SpecificationMetrics metrics = new SpecificationMetrics()
+    when:
+    metrics.reloaded(5000000L, 3)
+    metrics.reloaded(2000000L, 1)
+    then:
+    2L == metrics.reloads
+    7L == metrics.reloadMillis
+    2L == metrics.lastReloadMillis
+    4L == metrics.reloadChanges
+    1 == metrics.lastReloadChanges
+    when:
+    metrics.reset()
+    then:
+    0L == metrics.reloads
+    0L == metrics.reloadMillis
+    0 == metrics.lastReloadChanges
+    0 == metrics.layerCount
+  }
+
+  def 'can count lookups and time loads'() {
+    given:
+    SpecificationMetrics metrics = new SpecificationMetrics()
+    LoadOptions options = LoadOptions.defaults().withInstrumentation(metrics)
+    Properties defaults = new Properties()
+    defaults.setProperty('d', '2')
+    Specification spec = new Specification(defaults, options)
+    spec.setProperty('p', '1')
+    PropertyHandle<Integer> handle = spec.handle('p', Integer)
+    File file = File.createTempFile('metrics', '.properties')
+    file.deleteOnExit()
+    file.text = 'a=1\n'
+    when:
+    3.times { spec.getInt('p', 0) }
+    2.times { handle.get() }
+    spec.getInt('d', 0)
+    spec.getProperty('p')
+    then:
+    6 == metrics.getLookups('p')
+    1 == metrics.getLookups('d')
+    1 == metrics.getMisses('d')
+    0 == metrics.getMisses('p')
+    when:
+    Layer.read(file, options)
+    ApplicationProperties.create('com/brambolt/test/utf8/application.properties', options)
+    then:
+    metrics.getLayerLoadMillis().containsKey(file.absolutePath)
+    metrics.getLayerLoadMillis().containsKey('com/brambolt/test/utf8/application.properties')
+    0 < metrics.getBytesLoaded()
+  }
+}
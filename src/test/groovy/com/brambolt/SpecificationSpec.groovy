@@ -27,4 +27,23 @@ class SpecificationSpec extends spock.lang.Specification {
     then:
     intValue == v
   }
+
+  def 'can scan keys by prefix'() {
+    given:
+    Specification spec = new Specification()
+    spec.setProperty('g.system.hosts', 'h')
+    spec.setProperty('g.system.hosts.remote.address', 'r')
+    spec.setProperty('g.system.hosts.local.address', 'l')
+    spec.setProperty('g.system.hostsfile', 'f')
+    expect:
+    ['g.system.hosts.local.address', 'g.system.hosts.remote.address'] == spec.getKeys('g.system.hosts')
+    spec.getKeys('g.system.hosts') == spec.getKeys('g.system.hosts.')
+    ['local.address', 'remote.address'] == spec.view('g.system.hosts.').keySet() as List
+    'f' == spec.view('g.system').get('hostsfile')
+    when:
+    spec.setProperty('g.system.hosts.other.address', 'o')
+    then:
+    3 == spec.getKeys('g.system.hosts').size()
+    3 == spec.view('g.system.hosts').size()
+  }
 }
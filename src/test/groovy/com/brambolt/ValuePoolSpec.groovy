@@ -0,0 +1,66 @@
+package com.brambolt
+
+import com.brambolt.wrench.InstanceProperties
+
+class ValuePoolSpec extends spock.lang.Specification {
+
+  static final String GROUP_ID = 'com.brambolt.test.targets'
+
+  def 'shares equal values and units between instances'() {
+    given:
+    ValuePool pool = new ValuePool()
+    LoadOptions options = LoadOptions.defaults().withValuePool(pool)
+    when:
+    InstanceProperties first = InstanceProperties.getFor(GROUP_ID, null, options)
+    InstanceProperties second = InstanceProperties.getFor(GROUP_ID, null, options)
+    then:
+    !first.is(second)
+    first.getProperty('com.brambolt.test.targets.hosts.a.address')
+      .is(second.getProperty('com.brambolt.test.targets.hosts.a.address'))
+    first.getSystem().hosts.a.is(second.getSystem().hosts.a)
+    first.getSystem().environments.test.is(second.getSystem().environments.test)
+    !first.getSystem().hosts.a.is(first.getSystem().hosts.b)
+  }
+
+  def 'pooled units can not be modified'() {
+    given:
+    InstanceProperties instance = InstanceProperties.getFor(
+      GROUP_ID, null, LoadOptions.defaults().withValuePool(new ValuePool()))
+    when:
+    instance.getSystem().hosts.a.put('address', 'changed')
+    then:
+    thrown(UnsupportedOperationException)
+    '10.0.0.1' == instance.getSystem().hosts.a.address
+  }
+
+  def 'holds pooled values weakly'() {
+    given:
+    ValuePool pool = new ValuePool()
+    String value = pool.intern(fresh('value'))
+    pool.intern([ (fresh('key')): fresh('unit') ] as Map<String, Object>)
+    expect:
+    value.is(pool.intern(fresh('value')))
+    0 < pool.size()
+    when:
+    value = null
+    then:
+    await { System.gc(); 0 == pool.size() }
+  }
+
+  /**
+   * @return A string that is not a constant, so nothing else holds on to it
+   */
+  private static String fresh(String value) {
+    new StringBuilder(value).toString()
+  }
+
+  private static boolean await(Closure<Boolean> condition) {
+    long deadline = System.currentTimeMillis() + 10000
+    while (!condition.call()) {
+      if (System.currentTimeMillis() > deadline)
+        return false
+      Thread.sleep(10)
+    }
+    true
+  }
+}
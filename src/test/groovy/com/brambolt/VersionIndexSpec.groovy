@@ -0,0 +1,20 @@
+package com.brambolt
+
+class VersionIndexSpec extends spock.lang.Specification {
+
+  def 'can get versioned property'() {
+    given:
+    Specification spec = new Specification()
+    spec.setProperty('feature.x', 'base')
+    spec.setProperty('feature.x@<9', 'old')
+    spec.setProperty('feature.x@>=10.1', 'new')
+    spec.setProperty('feature.x@>=11', 'newer')
+    spec.setProperty('feature.x@10.5', 'pinned')
+    expect:
+    'old' == spec.getVersionedProperty('feature.x', Version.parse('8.2'))
+    'base' == spec.getVersionedProperty('feature.x', Version.parse('10'))
+    'new' == spec.getVersionedProperty('feature.x', Version.parse('10.1.2.3'))
+    'pinned' == spec.getVersionedProperty('feature.x', Version.parse('10.5'))
+    'newer' == spec.getVersionedProperty('feature.x', Version.parse('12'))
+  }
+}
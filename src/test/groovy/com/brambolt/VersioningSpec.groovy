@@ -1,4 +1,33 @@
 package com.brambolt
 
-class VersioningSpec {
+class VersioningSpec extends spock.lang.Specification {
+
+  def 'can shorten four-segment version'() {
+    expect:
+    '101203' == Versioning.shorten4('10.1.2.3')
+    '101210' == Versioning.shorten4('10.1.2.10')
+  }
+
+  def 'rejects version without four segments'() {
+    when:
+    Versioning.shorten4('10.1.2')
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def 'can pack and format version'() {
+    given:
+    Version version = Version.parse('10.1.2.3')
+    expect:
+    '10.1.2.3' == version.toString()
+    '101203' == version.toShortForm()
+    '101203' == version.appendShortForm(new StringBuilder()).toString()
+    Version.parse('10.1') == Version.of(10, 1, 0, 0)
+  }
+
+  def 'compares versions numerically'() {
+    expect:
+    Version.parse('10.1') > Version.parse('9.12')
+    Version.parse('40000') > Version.parse('2.0.0.1')
+  }
 }
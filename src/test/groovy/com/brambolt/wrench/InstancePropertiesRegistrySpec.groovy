@@ -0,0 +1,118 @@
+package com.brambolt.wrench
+
+import com.brambolt.LoadOptions
+import com.brambolt.Specification
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+class InstancePropertiesRegistrySpec extends spock.lang.Specification {
+
+  static final String GROUP_ID = 'com.brambolt.test.targets'
+
+  File secretsDir
+
+  def setup() {
+    secretsDir = Files.createTempDirectory('secrets').toFile()
+  }
+
+  def cleanup() {
+    secretsDir.deleteDir()
+  }
+
+  def 'shares one sealed instance for equal load options'() {
+    given:
+    InstancePropertiesRegistry registry = new InstancePropertiesRegistry(4)
+    when:
+    InstanceProperties first = registry.getFor(GROUP_ID, secretsDir, LoadOptions.defaults().withCharset(StandardCharsets.UTF_8))
+    InstanceProperties second = registry.getFor(GROUP_ID, secretsDir, LoadOptions.defaults().withCharset(StandardCharsets.UTF_8))
+    then:
+    first.is(second)
+    1 == registry.size()
+    first.isSealed()
+    !registry.getFor(GROUP_ID, secretsDir).is(first)
+  }
+
+  def 'sealed instances can not be modified through any view'() {
+    given:
+    InstanceProperties instance = new InstancePropertiesRegistry(4).getFor(GROUP_ID, secretsDir)
+    String key = 'com.brambolt.test.targets.name'
+    when:
+    modification.call(instance)
+    then:
+    thrown(UnsupportedOperationException)
+    'targets' == instance.getProperty(key)
+    where:
+    modification << [
+      { InstanceProperties it -> it.setProperty('com.brambolt.test.targets.name', 'changed') },
+      { InstanceProperties it -> it.keySet().remove('com.brambolt.test.targets.name') },
+      { InstanceProperties it -> Iterator i = it.keySet().iterator(); i.next(); i.remove() },
+      { InstanceProperties it -> it.entrySet().iterator().next().setValue('changed') },
+      { InstanceProperties it -> it.values().clear() },
+      { InstanceProperties it -> it.getSystem().put('name', 'changed') },
+      { InstanceProperties it -> it.getTargets().get('t1').put('name', 'changed') },
+      { InstanceProperties it -> it.getTargets().get('t1').get('context').get('host').put('address', 'changed') },
+      { InstanceProperties it -> it.resolveTargets().getContext(0).remove('host') },
+      { InstanceProperties it -> it.getSystem().get('hosts').entrySet().iterator().with { next(); remove() } }
+    ]
+  }
+
+  def 'loads again when the secrets file changes'() {
+    given:
+    InstancePropertiesRegistry registry = new InstancePropertiesRegistry(4)
+    File secretsFile = new File(secretsDir, InstanceProperties.SECRETS_PROPERTIES_RESOURCE_NAME)
+    secretsFile.text = 'com.brambolt.test.targets.password=first\n'
+    InstanceProperties first = registry.getFor(GROUP_ID, secretsDir)
+    when:
+    secretsFile.text = 'com.brambolt.test.targets.password=second\n'
+    secretsFile.lastModified = System.currentTimeMillis() + 1000
+    InstanceProperties second = registry.getFor(GROUP_ID, secretsDir)
+    then:
+    !first.is(second)
+    'first' == first.getProperty('com.brambolt.test.targets.password')
+    'second' == second.getProperty('com.brambolt.test.targets.password')
+    1 == registry.size()
+  }
+
+  def 'shares instances loaded without a secrets directory'() {
+    given:
+    InstancePropertiesRegistry registry = new InstancePropertiesRegistry(4)
+    when:
+    InstanceProperties first = registry.getFor(GROUP_ID, null)
+    InstanceProperties second = registry.getFor(GROUP_ID, null)
+    then:
+    first.is(second)
+    'targets' == first.getProperty('com.brambolt.test.targets.name')
+    !registry.getFor(GROUP_ID, secretsDir).is(first)
+    2 == registry.size()
+  }
+
+  def 'evicts the least recently used instances'() {
+    given:
+    InstancePropertiesRegistry registry = new InstancePropertiesRegistry(2)
+    LoadOptions utf8 = LoadOptions.defaults().withCharset(StandardCharsets.UTF_8)
+    LoadOptions provenance = LoadOptions.defaults().withProvenance(true)
+    InstanceProperties first = registry.getFor(GROUP_ID, secretsDir)
+    InstanceProperties second = registry.getFor(GROUP_ID, secretsDir, utf8)
+    when:
+    registry.getFor(GROUP_ID, secretsDir) // Most recently used now
+    registry.getFor(GROUP_ID, secretsDir, provenance)
+    then:
+    2 == registry.size()
+    first.is(registry.getFor(GROUP_ID, secretsDir))
+    !second.is(registry.getFor(GROUP_ID, secretsDir, utf8))
+  }
+
+  def 'sealed specification can not be modified'() {
+    given:
+    Specification spec = new Specification()
+    spec.setProperty('p1', 'v1')
+    spec.seal()
+    when:
+    spec.setProperty('p1', 'v2')
+    then:
+    thrown(UnsupportedOperationException)
+    spec.isSealed()
+    'v1' == spec.getProperty('p1')
+  }
+}
@@ -0,0 +1,149 @@
+package com.brambolt.wrench
+
+import com.brambolt.Layer
+import com.brambolt.LoadOptions
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Callable
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+class InstancePropertiesSpec extends spock.lang.Specification {
+
+  static final String GROUP_ID = 'com.brambolt.test.targets'
+
+  def 'prepares the structure once under concurrent access'() {
+    given:
+    InstanceProperties instance = InstanceProperties.getFor(GROUP_ID, null)
+    int threads = 8
+    CyclicBarrier barrier = new CyclicBarrier(threads)
+    ExecutorService pool = Executors.newFixedThreadPool(threads)
+    expect:
+    null == instance.@targets
+    when:
+    List<Future<List<Object>>> futures = (1..threads).collect {
+      pool.submit({
+        barrier.await()
+        [ instance.getTargets(), instance.getSystem(), instance.resolveTargets() ]
+      } as Callable<List<Object>>)
+    }
+    List<List<Object>> views = futures*.get()
+    then:
+    views.every { it[0].is(views[0][0]) && it[1].is(views[0][1]) && it[2].is(views[0][2]) }
+    [ 't1', 't2', 't3' ] as Set == views[0][0].keySet()
+    views[0][0].values().every { it.containsKey('context') }
+    'targets' == views[0][1].get('name')
+    cleanup:
+    pool.shutdown()
+  }
+
+  def 'resolves the same target contexts in one batch as one target at a time'() {
+    given:
+    ExecutorService pool = Executors.newFixedThreadPool(3)
+    Map<String, Map<String, Object>> expected = resolvePerTarget(
+      InstanceProperties.toSystem(InstanceProperties.getFor(GROUP_ID, null), GROUP_ID))
+    when:
+    ResolvedTargets serial = InstanceProperties.getFor(GROUP_ID, null).resolveTargets()
+    ResolvedTargets concurrent = InstanceProperties.getFor(
+      GROUP_ID, null, LoadOptions.defaults().withExecutor(pool)).resolveTargets()
+    then:
+    [ 't1', 't2', 't3' ] == serial.names
+    serial.names == concurrent.names
+    (0..<3).every { expected[serial.getName(it)] == new HashMap<>(serial.getContext(it)) }
+    (0..<3).every { expected[concurrent.getName(it)] == new HashMap<>(concurrent.getContext(it)) }
+    '10.0.0.2' == concurrent.getContext('t2').host1.address
+    cleanup:
+    pool.shutdown()
+  }
+
+  def 'can restore views from instance snapshot'() {
+    given:
+    File file = java.nio.file.Files.createTempFile('instance', '.snapshot').toFile()
+    InstanceProperties instance = InstanceProperties.getFor(GROUP_ID, null)
+    when:
+    InstanceSnapshot.write(instance, file)
+    FrozenInstanceProperties frozen = InstanceSnapshot.read(file)
+    then:
+    instance.freeze().getValues() == frozen.getValues()
+    GROUP_ID == frozen.getGroupId()
+    instance.resolveTargets().names == frozen.resolveTargets().names
+    (0..<3).every { instance.resolveTargets().getContext(it) == frozen.resolveTargets().getContext(it) }
+    instance.getTargets() == frozen.getTargets()
+    instance.getSystem() == frozen.getSystem()
+    '10.0.0.1' == frozen.getTargets().t1.context.host.address
+    '8080' == frozen.getTargets().t1.host.port
+    '10.0.0.2' == frozen.getTargets().t2.context.host1.address
+    cleanup:
+    file.delete()
+  }
+
+  def 'can find origins of application defaults'() {
+    given:
+    LoadOptions options = LoadOptions.defaults().withCharset(StandardCharsets.UTF_8).withProvenance(true)
+    when:
+    InstanceProperties instance = InstanceProperties.getFor('com.brambolt.test.utf8', null, options)
+    then:
+    'com/brambolt/test/utf8/application.properties' == instance.getOrigin('com.brambolt.test.utf8.greeting').path
+    1 == instance.getOrigin('com.brambolt.test.utf8.greeting').line
+    'com/brambolt/test/utf8/application.properties' == instance.freeze().getOrigin('com.brambolt.test.utf8.greeting').path
+  }
+
+  def 'loads application properties and file layers with the load options encoding'() {
+    given:
+    LoadOptions utf8 = LoadOptions.defaults().withCharset(StandardCharsets.UTF_8)
+    File file = java.nio.file.Files.createTempFile('secrets', '.properties').toFile()
+    file.setText('password=\u00e9\u20ac\n', 'UTF-8')
+    when:
+    InstanceProperties instance = InstanceProperties.getFor('com.brambolt.test.utf8', null, utf8)
+    Layer layer = Layer.read(file, utf8)
+    then:
+    'h\u00e9\u20ac' == instance.getProperty('com.brambolt.test.utf8.greeting')
+    '\u00e9\u20ac' == layer.values.getProperty('password')
+    'h\u00c3\u00a9\u00e2\u0082\u00ac' == ApplicationProperties.create('com/brambolt/test/utf8/application.properties')
+      .getProperty('com.brambolt.test.utf8.greeting')
+    cleanup:
+    file.delete()
+  }
+
+  /**
+   * Resolves the target contexts one target at a time, copying the system
+   * map for each target, the way they were resolved before the batch
+   * resolver.
+   */
+  private static Map<String, Map<String, Object>> resolvePerTarget(Map<String, Object> system) {
+    Map<String, Object> targets = system.targets as Map<String, Object>
+    List<String> unitTypes = system.containsKey('units')
+      ? system.units.listing.toString().split(',') as List<String>
+      : [ 'environment', 'host' ]
+    Map<String, Map<String, Object>> contexts = [:]
+    for (String name: targets.listing.toString().split(',')) {
+      Map<String, Object> target = targets[name] as Map<String, Object>
+      if (target.containsKey('context')) {
+        contexts[name] = target.context as Map<String, Object>
+        continue
+      }
+      Map<String, Object> context = new HashMap<>(system)
+      context.remove('targets')
+      for (String unitType: unitTypes) {
+        Map<String, Object> units = system[unitType + 's'] as Map<String, Object>
+        if (target.containsKey(unitType)) {
+          Map<String, Object> targetUnit = target[unitType] as Map<String, Object>
+          Map<String, Object> unit = new HashMap<>(targetUnit)
+          unit.putAll(units[targetUnit.name] as Map<String, Object>)
+          context[unitType] = unit
+        } else if (target.containsKey(unitType + 's')) {
+          String[] unitNames = target[unitType + 's'].listing.toString().split(',')
+          unitNames.eachWithIndex { String unitName, int i ->
+            Map<String, Object> unit = new HashMap<>()
+            unit.putAll(units[unitName] as Map<String, Object>)
+            context[unitType + i] = unit
+          }
+        }
+      }
+      contexts[name] = context
+    }
+    contexts
+  }
+}
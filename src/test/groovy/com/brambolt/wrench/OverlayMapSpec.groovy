@@ -0,0 +1,77 @@
+package com.brambolt.wrench
+
+class OverlayMapSpec extends spock.lang.Specification {
+
+  def 'reads through to the base map'() {
+    given:
+    Map<String, Object> base = [ a: '1', b: '2' ]
+    OverlayMap<String, Object> overlay = new OverlayMap<>(base)
+    expect:
+    '1' == overlay.get('a')
+    overlay.containsKey('b')
+    !overlay.containsKey('c')
+    2 == overlay.size()
+    0 == overlay.getDeltaSize()
+    base == overlay
+  }
+
+  def 'writes only to the overlay'() {
+    given:
+    Map<String, Object> base = [ a: '1', b: '2' ]
+    OverlayMap<String, Object> overlay = new OverlayMap<>(base)
+    when:
+    Object previous = overlay.put('a', '3')
+    overlay.put('c', '4')
+    Object removed = overlay.remove('b')
+    then:
+    '1' == previous
+    '2' == removed
+    [ a: '3', c: '4' ] == overlay
+    !overlay.containsKey('b')
+    null == overlay.get('b')
+    3 == overlay.getDeltaSize()
+    [ a: '1', b: '2' ] == base
+    when:
+    overlay.put('b', '5')
+    then:
+    '5' == overlay.get('b')
+    [ a: '3', b: '5', c: '4' ] == overlay
+    when:
+    overlay.clear()
+    then:
+    overlay.isEmpty()
+    [ a: '1', b: '2' ] == base
+  }
+
+  def 'overlays share the same base'() {
+    given:
+    Map<String, Object> base = [ a: '1' ]
+    OverlayMap<String, Object> first = new OverlayMap<>(base)
+    OverlayMap<String, Object> second = new OverlayMap<>(base)
+    when:
+    first.put('a', '2')
+    second.remove('a')
+    then:
+    '2' == first.get('a')
+    !second.containsKey('a')
+    '1' == base.get('a')
+  }
+
+  def 'iterates overrides and then visible base entries'() {
+    given:
+    OverlayMap<String, Object> overlay = new OverlayMap<>([ a: '1', b: '2', c: '3' ])
+    overlay.put('b', '4')
+    overlay.remove('c')
+    when:
+    List<String> keys = overlay.entrySet().collect { it.key }
+    then:
+    [ 'b', 'a' ] == keys
+    [ a: '1', b: '4' ] == overlay.collectEntries { [ it.key, it.value ] }
+    when:
+    Iterator<Map.Entry<String, Object>> iterator = overlay.entrySet().iterator()
+    iterator.next()
+    iterator.remove()
+    then:
+    thrown(UnsupportedOperationException)
+  }
+}
@@ -0,0 +1,184 @@
+package com.brambolt.wrench
+
+import com.brambolt.LoadOptions
+import com.brambolt.Origin
+import com.brambolt.PropertyChanges
+import com.brambolt.SpecificationMetrics
+
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+class ReloadableInstancePropertiesSpec extends spock.lang.Specification {
+
+  static final String GROUP_ID = 'com.brambolt.test.reload'
+
+  static final AtomicLong TOUCHES = new AtomicLong()
+
+  File parentDir
+
+  File secretsDir
+
+  def setup() {
+    parentDir = Files.createTempDirectory('secrets').toFile()
+    secretsDir = new File(parentDir, 'node')
+    secretsDir.mkdirs()
+  }
+
+  def cleanup() {
+    parentDir.deleteDir()
+  }
+
+  def 'can reload changed secrets'() {
+    given:
+    File secretsFile = write(secretsDir, 'com.brambolt.test.reload.password=first\n')
+    ReloadableInstanceProperties properties = ReloadableInstanceProperties.getFor(GROUP_ID, secretsDir)
+    expect:
+    'first' == properties.getProperty('com.brambolt.test.reload.password')
+    properties.reload().isEmpty()
+    when:
+    touch(write(secretsDir, 'com.brambolt.test.reload.password=second\nextra=1\n'))
+    Set<String> changed = properties.reload()
+    then:
+    [ 'com.brambolt.test.reload.password', 'extra' ] as Set == changed
+    'second' == properties.getProperty('com.brambolt.test.reload.password')
+    'reload' == properties.getProperty('com.brambolt.test.reload.name')
+    1L == properties.reloads
+    when:
+    secretsFile.delete()
+    properties.reload()
+    then:
+    'none' == properties.getProperty('com.brambolt.test.reload.password')
+    null == properties.getProperty('extra')
+  }
+
+  def 'keeps one load per layer and times reloads in the metrics'() {
+    given:
+    write(secretsDir, 'com.brambolt.test.reload.password=first\n')
+    SpecificationMetrics metrics = new SpecificationMetrics()
+    ReloadableInstanceProperties properties = ReloadableInstanceProperties.getFor(
+      GROUP_ID, secretsDir, LoadOptions.defaults().withInstrumentation(metrics))
+    int layers = metrics.layerCount
+    when:
+    3.times {
+      touch(write(secretsDir, "com.brambolt.test.reload.password=v${it}\nextra=${it}\n"))
+      properties.reload()
+    }
+    then:
+    0 < layers
+    layers == metrics.layerCount
+    3L == metrics.reloads
+    2 == metrics.lastReloadChanges
+    6L == metrics.reloadChanges
+  }
+
+  def 'can notify subscribers of reloaded changes'() {
+    given:
+    write(secretsDir, 'com.brambolt.test.reload.password=first\n')
+    ReloadableInstanceProperties properties = ReloadableInstanceProperties.getFor(GROUP_ID, secretsDir)
+    List<PropertyChanges> received = []
+    CountDownLatch notified = new CountDownLatch(1)
+    properties.subscribe(GROUP_ID, { PropertyChanges changes -> received << changes; notified.countDown() })
+    when:
+    touch(write(secretsDir, 'com.brambolt.test.reload.password=second\n'))
+    properties.reload()
+    then:
+    notified.await(5, TimeUnit.SECONDS)
+    [ 'com.brambolt.test.reload.password' ] as Set == received[0].keys
+    'first' == received[0].getOldValue('com.brambolt.test.reload.password')
+    'second' == received[0].getNewValue('com.brambolt.test.reload.password')
+  }
+
+  def 'can find nearer and fall back to parent secrets files'() {
+    given:
+    write(parentDir, 'com.brambolt.test.reload.password=parent\n')
+    ReloadableInstanceProperties properties = ReloadableInstanceProperties.getFor(GROUP_ID, secretsDir)
+    expect:
+    'parent' == properties.getProperty('com.brambolt.test.reload.password')
+    when:
+    File nearer = write(secretsDir, 'com.brambolt.test.reload.password=nearer\n')
+    properties.reload()
+    then:
+    'nearer' == properties.getProperty('com.brambolt.test.reload.password')
+    when:
+    nearer.delete()
+    properties.reload()
+    then:
+    'parent' == properties.getProperty('com.brambolt.test.reload.password')
+  }
+
+  def 'can find origins of reloaded values'() {
+    given:
+    File secretsFile = write(secretsDir, 'com.brambolt.test.reload.password=first\n')
+    ReloadableInstanceProperties properties = ReloadableInstanceProperties.getFor(
+      GROUP_ID, secretsDir, LoadOptions.defaults().withProvenance(true))
+    expect:
+    secretsFile.absolutePath == properties.current().getOrigin('com.brambolt.test.reload.password').path
+    'com/brambolt/test/reload/instance.properties' == properties.current().getOrigin('com.brambolt.test.reload.name').path
+    when:
+    touch(write(secretsDir, '# moved\n\ncom.brambolt.test.reload.password=second\n'))
+    properties.reload()
+    Origin origin = properties.current().getOrigin('com.brambolt.test.reload.password')
+    then:
+    secretsFile.absolutePath == origin.path
+    3 == origin.line
+    'second' == origin.value
+    ['none'] == origin.overriddenValues
+    'com/brambolt/test/reload/instance.properties' == properties.current().getOrigin('com.brambolt.test.reload.name').path
+    when:
+    secretsFile.delete()
+    properties.reload()
+    then:
+    'com/brambolt/test/reload/instance.properties' == properties.current().getOrigin('com.brambolt.test.reload.password').path
+  }
+
+  def 'can keep polling after a bad secrets file'() {
+    given:
+    write(secretsDir, 'com.brambolt.test.reload.password=first\n')
+    ReloadableInstanceProperties properties = ReloadableInstanceProperties.getFor(GROUP_ID, secretsDir)
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor()
+    List<RuntimeException> failures = [].asSynchronized()
+    when:
+    touch(write(secretsDir, 'com.brambolt.test.reload.password=\\u12\n'))
+    properties.start(executor, 10, TimeUnit.MILLISECONDS, { RuntimeException x -> failures << x })
+    then:
+    await { !failures.isEmpty() }
+    'first' == properties.getProperty('com.brambolt.test.reload.password')
+    0 < properties.failures
+    null != properties.lastFailure
+    when:
+    touch(write(secretsDir, 'com.brambolt.test.reload.password=fixed\n'))
+    then:
+    await { 'fixed' == properties.getProperty('com.brambolt.test.reload.password') }
+    cleanup:
+    executor.shutdownNow()
+  }
+
+  private static File write(File dir, String content) {
+    File file = new File(dir, InstanceProperties.SECRETS_PROPERTIES_RESOURCE_NAME)
+    file.text = content
+    file
+  }
+
+  /**
+   * Moves the modification time on, so the change is seen even when the
+   * file system time resolution is coarse.
+   */
+  private static File touch(File file) {
+    file.lastModified = System.currentTimeMillis() + 1000 * TOUCHES.incrementAndGet()
+    file
+  }
+
+  private static boolean await(Closure<Boolean> condition) {
+    long deadline = System.currentTimeMillis() + 5000
+    while (!condition.call()) {
+      if (System.currentTimeMillis() > deadline)
+        return false
+      Thread.sleep(10)
+    }
+    true
+  }
+}
@@ -0,0 +1,135 @@
+package com.brambolt.wrench.processor
+
+import com.brambolt.Specification
+import com.brambolt.wrench.Configuration
+import com.google.testing.compile.Compilation
+import com.google.testing.compile.Compiler
+import com.google.testing.compile.JavaFileObjects
+
+import javax.tools.JavaFileObject
+import java.time.Duration
+
+import static com.google.testing.compile.Compiler.javac
+
+class ConfigurationProcessorSpec extends spock.lang.Specification {
+
+  List<File> dirs = []
+
+  def cleanup() {
+    dirs*.deleteDir()
+  }
+
+  static final JavaFileObject BASE = JavaFileObjects.forSourceString('test.BaseConfiguration', '''
+    package test;
+
+    import com.brambolt.wrench.Default;
+    import com.brambolt.wrench.Key;
+
+    public interface BaseConfiguration {
+        @Key("name") String name();
+        @Key("debug") @Default("false") boolean debug();
+    }
+    ''')
+
+  static final JavaFileObject SERVER = JavaFileObjects.forSourceString('test.ServerConfiguration', '''
+    package test;
+
+    import com.brambolt.wrench.Configuration;
+    import com.brambolt.wrench.Default;
+    import com.brambolt.wrench.Key;
+    import java.time.Duration;
+
+    @Configuration(groupId = "some.example.system")
+    public interface ServerConfiguration extends BaseConfiguration {
+        @Key("server.port") @Default("8080") int port();
+        @Key("server.timeout") Duration timeout();
+        @Key("server.limit") long limit();
+        @Key("server.ratio") @Default("0.5") double ratio();
+        default String describe() { return name() + ":" + port(); }
+    }
+    ''')
+
+  def 'generates a binder for declared and inherited properties'() {
+    when:
+    Compilation compilation = compiler().compile(BASE, SERVER)
+    then:
+    Compilation.Status.SUCCESS == compilation.status()
+    compilation.generatedSourceFile('test.ServerConfigurationValues').isPresent()
+    when:
+    Specification spec = new Specification()
+    spec.setProperty('some.example.system.name', 'server')
+    spec.setProperty('some.example.system.server.timeout', 'PT30S')
+    spec.setProperty('some.example.system.server.limit', '10000000000')
+    spec.setProperty('some.example.system.unrelated', 'ignored')
+    def configuration = load(compilation, 'test.ServerConfigurationValues').bind(spec)
+    then:
+    'server' == configuration.name()
+    !configuration.debug()
+    8080 == configuration.port()
+    Duration.ofSeconds(30) == configuration.timeout()
+    10000000000L == configuration.limit()
+    0.5d == configuration.ratio()
+    'server:8080' == configuration.describe()
+  }
+
+  def 'fails to bind a missing required property'() {
+    given:
+    Compilation compilation = compiler().compile(BASE, SERVER)
+    Specification spec = new Specification()
+    spec.setProperty('some.example.system.server.timeout', 'PT30S')
+    spec.setProperty('some.example.system.server.limit', '1')
+    when:
+    load(compilation, 'test.ServerConfigurationValues').bind(spec)
+    then:
+    NoSuchElementException x = thrown()
+    x.message.contains('some.example.system.name')
+  }
+
+  def 'rejects invalid defaults and duplicate keys at compile time'() {
+    when:
+    Compilation compilation = compiler().compile(
+      JavaFileObjects.forSourceString('test.BadConfiguration', '''
+        package test;
+
+        import com.brambolt.wrench.Configuration;
+        import com.brambolt.wrench.Default;
+        import com.brambolt.wrench.Key;
+
+        @Configuration(groupId = "some.example.system")
+        public interface BadConfiguration {
+            @Key("port") @Default("eighty") int port();
+            @Key("name") String name();
+            @Key("name") String alias();
+        }
+        '''))
+    then:
+    Compilation.Status.FAILURE == compilation.status()
+    compilation.errors()*.getMessage(Locale.ROOT).any { it.contains('Invalid default for int property port') }
+    compilation.errors()*.getMessage(Locale.ROOT).any { it.contains('Duplicate configuration key: name') }
+  }
+
+  /**
+   * Compiles with the processor, against the classes of the library
+   * wherever the test runner has them.
+   */
+  private static Compiler compiler() {
+    javac().withProcessors(new ConfigurationProcessor())
+      .withClasspath([ new File(Configuration.protectionDomain.codeSource.location.toURI()) ])
+  }
+
+  /**
+   * Writes the classes the compilation generated to a directory and loads
+   * one of them, with the test classes as parent.
+   */
+  private Class<?> load(Compilation compilation, String name) {
+    File dir = java.nio.file.Files.createTempDirectory('generated').toFile()
+    dirs << dir
+    compilation.generatedFiles().findAll { JavaFileObject.Kind.CLASS == it.kind }.each { JavaFileObject file ->
+      String path = file.toUri().path
+      File classFile = new File(dir, path.substring(path.indexOf('/CLASS_OUTPUT/') + '/CLASS_OUTPUT/'.length()))
+      classFile.parentFile.mkdirs()
+      classFile.bytes = file.openInputStream().bytes
+    }
+    new URLClassLoader([ dir.toURI().toURL() ] as URL[], getClass().classLoader).loadClass(name)
+  }
+}